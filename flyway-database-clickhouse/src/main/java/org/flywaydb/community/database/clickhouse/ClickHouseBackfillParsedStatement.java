@@ -0,0 +1,311 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-clickhouse
+ * ========================================================================
+ * Copyright (C) 2010 - 2025 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+
+package org.flywaydb.community.database.clickhouse;
+
+import lombok.CustomLog;
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.api.configuration.Configuration;
+import org.flywaydb.core.api.resource.Resource;
+import org.flywaydb.core.internal.jdbc.JdbcTemplate;
+import org.flywaydb.core.internal.jdbc.Result;
+import org.flywaydb.core.internal.jdbc.Results;
+import org.flywaydb.core.internal.sqlscript.Delimiter;
+import org.flywaydb.core.internal.sqlscript.ParsedSqlStatement;
+import org.flywaydb.core.internal.sqlscript.SqlScriptExecutor;
+import org.flywaydb.core.internal.util.StringUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A statement preceded by a {@code -- clickhouse:backfill source=[db.]table [parallelism=N]} comment. It is executed
+ * once for each active partition of the source table, with {@code {partition_id}} replaced by the quoted partition
+ * id and {@code {partition}} by the partition expression, for example:
+ * <pre>
+ * -- clickhouse:backfill source=events parallelism=8
+ * ALTER TABLE events UPDATE country = upper(country) IN PARTITION ID {partition_id} WHERE country != upper(country);
+ * </pre>
+ * The partitions run on a bounded pool of connections of their own, opened like the one of the migration and with the
+ * {@code clickhouse:settings} of its script, {@code mutations_sync} for example. Each finished partition is recorded in
+ * {@link #CHECKPOINT_TABLE_NAME}, and a rerun of the migration after a failure skips those. After a failure, the
+ * partitions already running are finished and recorded before the migration fails.
+ * <p>
+ * The checkpoints belong to one execution of the migration: the script, the line and text of the statement, and the
+ * installed_rank the migration is recorded under. A repaired migration gets the same rank again and resumes, a rerun
+ * of a successful one starts over. They are deleted once every partition is done.
+ * <p>
+ * A partition whose statement succeeded but whose checkpoint could not be written runs again, so the statement must
+ * be idempotent, such as {@code ALTER TABLE ... UPDATE} of the values not yet converted or
+ * {@code ALTER TABLE ... REPLACE PARTITION}. A plain {@code INSERT} would duplicate rows and is rejected.
+ */
+@CustomLog
+public class ClickHouseBackfillParsedStatement extends ParsedSqlStatement {
+
+    static final String CHECKPOINT_TABLE_NAME = "flyway_backfill_checkpoint";
+
+    private static final Pattern DIRECTIVE = Pattern.compile("^\\s*--\\s*clickhouse:backfill\\s+(.*)$", Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
+    private static final Pattern OPTION = Pattern.compile("(\\w+)\\s*=\\s*(\\S+)");
+    private static final Pattern SOURCE = Pattern.compile("^(?:(`[^`]+`|\\w+)\\.)?(`[^`]+`|\\w+)$");
+    private static final Pattern INSERT = Pattern.compile("^(\\s*(--[^\\n]*\\n|/\\*.*?\\*/))*\\s*INSERT\\b", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final int DEFAULT_PARALLELISM = 4;
+
+    private final String backfill;
+    private final String sourceDatabase;
+    private final String sourceTable;
+    private final int parallelism;
+
+    private ClickHouseBackfillParsedStatement(int pos, int line, int col, String sql, Delimiter delimiter, boolean canExecuteInTransaction,
+                                              String backfill, String sourceDatabase, String sourceTable, int parallelism) {
+        super(pos, line, col, sql, delimiter, canExecuteInTransaction, false);
+        this.backfill = backfill;
+        this.sourceDatabase = sourceDatabase;
+        this.sourceTable = sourceTable;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return The statement expanded per partition, or {@code null} if it has no backfill directive.
+     */
+    static ClickHouseBackfillParsedStatement of(int pos, int line, int col, String sql, Delimiter delimiter, boolean canExecuteInTransaction,
+                                                Resource resource) {
+        Matcher directive = DIRECTIVE.matcher(sql);
+        if (!directive.find()) {
+            return null;
+        }
+
+        String source = null;
+        int parallelism = DEFAULT_PARALLELISM;
+        Matcher option = OPTION.matcher(directive.group(1));
+        while (option.find()) {
+            if ("source".equalsIgnoreCase(option.group(1))) {
+                source = option.group(2);
+            } else if ("parallelism".equalsIgnoreCase(option.group(1))) {
+                try {
+                    parallelism = Math.max(1, Integer.parseInt(option.group(2)));
+                } catch (NumberFormatException e) {
+                    throw new FlywayException("Invalid parallelism in the clickhouse:backfill directive at line " + line + " of "
+                            + resource.getFilename() + ": " + option.group(2), e);
+                }
+            } else {
+                throw new FlywayException("Unknown option " + option.group(1) + " in the clickhouse:backfill directive at line " + line
+                        + " of " + resource.getFilename() + ". Expected source and parallelism");
+            }
+        }
+        Matcher sourceMatcher = source == null ? null : SOURCE.matcher(source);
+        if (sourceMatcher == null || !sourceMatcher.matches()) {
+            throw new FlywayException("Missing or invalid source=[database.]table in the clickhouse:backfill directive at line " + line
+                    + " of " + resource.getFilename());
+        }
+        if (INSERT.matcher(sql).find()) {
+            throw new FlywayException("The clickhouse:backfill directive at line " + line + " of " + resource.getFilename()
+                    + " is on an INSERT, which duplicates rows when a partition runs again."
+                    + " Use an idempotent statement such as ALTER TABLE ... UPDATE or ALTER TABLE ... REPLACE PARTITION");
+        }
+        // Tied to the statement, so that an edited statement does not resume from the checkpoints of another one
+        String backfill = resource.getFilename() + ":" + line + ":" + Integer.toHexString(sql.hashCode());
+        return new ClickHouseBackfillParsedStatement(pos, line, col, sql, delimiter, canExecuteInTransaction, backfill,
+                unquote(sourceMatcher.group(1)), unquote(sourceMatcher.group(2)), parallelism);
+    }
+
+    private static String unquote(String name) {
+        return name != null && name.startsWith("`") ? name.substring(1, name.length() - 1) : name;
+    }
+
+    String getSourceDatabase() {
+        return sourceDatabase;
+    }
+
+    String getSourceTable() {
+        return sourceTable;
+    }
+
+    int getParallelism() {
+        return parallelism;
+    }
+
+    @Override
+    public Results execute(JdbcTemplate jdbcTemplate, SqlScriptExecutor sqlScriptExecutor, Configuration config) {
+        if (!(sqlScriptExecutor instanceof ClickHouseSqlScriptExecutor)) {
+            throw new FlywayException("The clickhouse:backfill directive at line " + getLineNumber() + " needs the ClickHouse script executor");
+        }
+        Results results = new Results();
+        try {
+            String database = jdbcTemplate.queryForString("SELECT currentDatabase()");
+            String checkpointTable = "`" + database + "`." + CHECKPOINT_TABLE_NAME;
+            ensureCheckpointTable(jdbcTemplate, config, checkpointTable);
+            String execution = backfill + ":" + getNextInstalledRank(jdbcTemplate, config, database);
+
+            List<String[]> partitions = jdbcTemplate.query("SELECT DISTINCT partition_id, partition FROM system.parts" +
+                            " WHERE database = ? AND table = ? AND active ORDER BY partition_id",
+                    rs -> new String[]{rs.getString(1), rs.getString(2)},
+                    sourceDatabase == null ? database : sourceDatabase, sourceTable);
+            Set<String> finished = new HashSet<>(jdbcTemplate.queryForStringList(
+                    "SELECT partition_id FROM " + checkpointTable + " FINAL WHERE backfill = ?", execution));
+            List<String[]> remaining = new ArrayList<>();
+            for (String[] partition : partitions) {
+                if (!finished.contains(partition[0])) {
+                    remaining.add(partition);
+                }
+            }
+            if (remaining.size() < partitions.size()) {
+                LOG.info("Resuming backfill at line " + getLineNumber() + ": " + (partitions.size() - remaining.size()) + " of "
+                        + partitions.size() + " partitions already done");
+            }
+
+            run((ClickHouseSqlScriptExecutor) sqlScriptExecutor, database, checkpointTable, execution, remaining, partitions.size());
+            deleteCheckpoints(jdbcTemplate, checkpointTable, execution);
+            results.addResult(new Result(remaining.size(), null, null, getSql()));
+        } catch (SQLException e) {
+            results.setException(e);
+        }
+        return results;
+    }
+
+    /**
+     * @return The installed_rank the running migration gets in the schema history table, computed the way Flyway does.
+     */
+    private static int getNextInstalledRank(JdbcTemplate jdbcTemplate, Configuration config, String database) throws SQLException {
+        String historySchema = config.getDefaultSchema() != null ? config.getDefaultSchema()
+                : config.getSchemas().length > 0 ? config.getSchemas()[0]
+                : database;
+        if (jdbcTemplate.queryForInt("SELECT count() FROM system.tables WHERE database = ? AND name = ?", historySchema, config.getTable()) == 0) {
+            return 1;
+        }
+        return jdbcTemplate.queryForInt("SELECT max(installed_rank) FROM `" + historySchema + "`.`" + config.getTable() + "`") + 1;
+    }
+
+    private void run(ClickHouseSqlScriptExecutor sqlScriptExecutor, String database, String checkpointTable, String execution,
+                     List<String[]> partitions, int total) throws SQLException {
+        if (partitions.isEmpty()) {
+            return;
+        }
+        AtomicBoolean failed = new AtomicBoolean();
+        AtomicInteger done = new AtomicInteger(total - partitions.size());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, partitions.size()), runnable -> {
+            Thread thread = new Thread(runnable, "flyway-clickhouse-backfill");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (String[] partition : partitions) {
+                futures.add(executor.submit(() -> {
+                    // Stop picking up partitions once one has failed, the others resume from their checkpoint on rerun
+                    if (failed.get()) {
+                        return null;
+                    }
+                    try {
+                        backfillPartition(sqlScriptExecutor, database, checkpointTable, execution, partition[0], partition[1]);
+                    } catch (SQLException | RuntimeException e) {
+                        failed.set(true);
+                        throw e;
+                    }
+                    LOG.info("Backfilled partition " + partition[0] + " at line " + getLineNumber() + " (" + done.incrementAndGet() + "/" + total + ")");
+                    return null;
+                }));
+            }
+        } finally {
+            // Not interrupted, so that the partitions already running finish and record their checkpoint
+            executor.shutdown();
+        }
+
+        Throwable failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                failed.set(true);
+                Thread.currentThread().interrupt();
+                throw new FlywayException("Interrupted during backfill at line " + getLineNumber(), e);
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                } else {
+                    failure.addSuppressed(e.getCause());
+                }
+            }
+        }
+        if (failure instanceof SQLException) {
+            throw (SQLException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure != null) {
+            throw new FlywayException(failure);
+        }
+    }
+
+    private void backfillPartition(ClickHouseSqlScriptExecutor sqlScriptExecutor, String database, String checkpointTable, String execution,
+                                   String partitionId, String partition) throws SQLException {
+        String sql = getSql()
+                .replace("{partition_id}", "'" + partitionId.replace("\\", "\\\\").replace("'", "\\'") + "'")
+                .replace("{partition}", partition);
+        try (Connection connection = sqlScriptExecutor.openSideConnection(database)) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(sql);
+            }
+            try (PreparedStatement checkpoint = connection.prepareStatement("INSERT INTO " + checkpointTable + " (backfill, partition_id) VALUES (?, ?)")) {
+                checkpoint.setString(1, execution);
+                checkpoint.setString(2, partitionId);
+                checkpoint.executeUpdate();
+            }
+        }
+    }
+
+    private void deleteCheckpoints(JdbcTemplate jdbcTemplate, String checkpointTable, String execution) {
+        try {
+            jdbcTemplate.execute("ALTER TABLE " + checkpointTable + " DELETE WHERE backfill = ?", execution);
+        } catch (SQLException e) {
+            // Harmless, as no other execution uses them
+            LOG.warn("Unable to delete the checkpoints of the backfill at line " + getLineNumber() + ": " + e.getMessage());
+        }
+    }
+
+    private static void ensureCheckpointTable(JdbcTemplate jdbcTemplate, Configuration config, String checkpointTable) throws SQLException {
+        ClickHouseConfigurationExtension extension = config.getPluginRegister().getPlugin(ClickHouseConfigurationExtension.class);
+        boolean isClustered = StringUtils.hasText(extension.getClusterName());
+        String engine = isClustered
+                ? "ReplicatedReplacingMergeTree('" + extension.getZookeeperPath() + "', '{replica}')"
+                : "ReplacingMergeTree";
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + checkpointTable + (isClustered ? (" ON CLUSTER " + extension.getClusterName()) : "") + "(" +
+                "    backfill String," +
+                "    partition_id String," +
+                "    finished_at DateTime DEFAULT now()" +
+                ") ENGINE = " + engine +
+                " ORDER BY (backfill, partition_id)");
+        ClickHouseCatalogSnapshot.invalidate();
+    }
+}
@@ -0,0 +1,116 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-clickhouse
+ * ========================================================================
+ * Copyright (C) 2010 - 2025 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+
+package org.flywaydb.community.database.clickhouse;
+
+import org.flywaydb.core.internal.jdbc.JdbcTemplate;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * The databases and tables of the server, read once from system.databases and system.tables instead of with one
+ * query per existence or emptiness check. Tables are only read for the schemas Flyway manages, in a single query,
+ * plus any other schema asked for. The snapshot is reloaded after DDL, signalled through {@link #invalidate()}.
+ */
+class ClickHouseCatalogSnapshot {
+
+    /**
+     * Bumped by every DDL statement Flyway runs in this JVM, which makes all loaded snapshots stale.
+     */
+    private static final AtomicLong GENERATION = new AtomicLong();
+
+    private final ClickHouseDatabase database;
+    private long generation = -1;
+    private Set<String> databases;
+    private final Map<String, List<String>> tables = new HashMap<>();
+
+    ClickHouseCatalogSnapshot(ClickHouseDatabase database) {
+        this.database = database;
+    }
+
+    /**
+     * Marks all snapshots as stale, after a statement that may have created, dropped or renamed a database or table.
+     */
+    static void invalidate() {
+        GENERATION.incrementAndGet();
+    }
+
+    synchronized boolean databaseExists(String name) throws SQLException {
+        refreshIfStale();
+        if (databases == null) {
+            databases = new HashSet<>(systemJdbcTemplate().queryForStringList("SELECT name FROM system.databases"));
+        }
+        return databases.contains(name);
+    }
+
+    synchronized List<String> getTables(String schema) throws SQLException {
+        refreshIfStale();
+        List<String> schemaTables = tables.get(schema);
+        if (schemaTables == null) {
+            loadTables(schema);
+            schemaTables = tables.get(schema);
+        }
+        return schemaTables;
+    }
+
+    private void loadTables(String schema) throws SQLException {
+        Set<String> schemas = new LinkedHashSet<>();
+        schemas.add(schema);
+        if (database.getConfiguration().getDefaultSchema() != null) {
+            schemas.add(database.getConfiguration().getDefaultSchema());
+        }
+        schemas.addAll(Arrays.asList(database.getConfiguration().getSchemas()));
+        schemas.removeAll(tables.keySet());
+
+        Map<String, List<String>> loaded = new HashMap<>();
+        for (String name : schemas) {
+            loaded.put(name, new ArrayList<>());
+        }
+        String placeholders = schemas.stream().map(s -> "?").collect(Collectors.joining(", "));
+        systemJdbcTemplate().query("SELECT database, name FROM system.tables WHERE database IN (" + placeholders + ")",
+                rs -> loaded.get(rs.getString("database")).add(rs.getString("name")),
+                schemas.toArray());
+        loaded.forEach((name, list) -> tables.put(name, Collections.unmodifiableList(list)));
+    }
+
+    private void refreshIfStale() {
+        long current = GENERATION.get();
+        if (generation != current) {
+            databases = null;
+            tables.clear();
+            generation = current;
+        }
+    }
+
+    private JdbcTemplate systemJdbcTemplate() {
+        return database.getSystemConnection().getJdbcTemplate();
+    }
+}
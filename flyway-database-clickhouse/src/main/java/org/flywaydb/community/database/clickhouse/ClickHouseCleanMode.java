@@ -0,0 +1,38 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-clickhouse
+ * ========================================================================
+ * Copyright (C) 2010 - 2025 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+
+package org.flywaydb.community.database.clickhouse;
+
+/**
+ * How {@code clean} empties a database.
+ */
+public enum ClickHouseCleanMode {
+    /**
+     * Drops the tables, views and dictionaries one by one, in dependency order.
+     */
+    TABLES,
+    /**
+     * Drops the whole database with {@code DROP DATABASE ... SYNC} and creates it again from its
+     * {@code SHOW CREATE DATABASE} statement. Storage is released immediately, but anything attached to the
+     * database itself is lost, so this only applies to databases Flyway created, as recorded in the schema history
+     * table. Other databases are cleaned as with {@link #TABLES}.
+     */
+    DROP_DATABASE
+}
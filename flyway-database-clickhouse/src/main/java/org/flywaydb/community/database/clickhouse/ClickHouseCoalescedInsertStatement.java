@@ -0,0 +1,275 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-clickhouse
+ * ========================================================================
+ * Copyright (C) 2010 - 2025 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+
+package org.flywaydb.community.database.clickhouse;
+
+import lombok.CustomLog;
+import org.flywaydb.core.api.configuration.Configuration;
+import org.flywaydb.core.internal.jdbc.JdbcTemplate;
+import org.flywaydb.core.internal.jdbc.Result;
+import org.flywaydb.core.internal.jdbc.Results;
+import org.flywaydb.core.internal.sqlscript.Delimiter;
+import org.flywaydb.core.internal.sqlscript.ParsedSqlStatement;
+import org.flywaydb.core.internal.sqlscript.SqlScriptExecutor;
+import org.flywaydb.core.internal.sqlscript.SqlStatement;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Adjacent {@code INSERT INTO t (cols) VALUES ...} statements of a migration merged into a single insert, which
+ * ClickHouse writes as one block and one part instead of one part per statement. Only enabled when
+ * {@code flyway.clickhouse.insertCoalesceMaxRows} is set.
+ * <p>
+ * The merged insert is sent as a single block, so that the server either stores all of its rows or none. If the server
+ * rejects the rows themselves, for instance because a value cannot be parsed or violates a constraint, nothing was
+ * stored and the original statements are executed one by one, so that the error is reported for the statement and
+ * line that caused it. Any other failure, such as a timeout or a lost connection, leaves it unknown whether the block
+ * was stored. Executing the original statements again could then store their rows twice, as they are different blocks
+ * from the merged insert, so the failure is reported for the merged insert instead.
+ */
+@CustomLog
+public class ClickHouseCoalescedInsertStatement extends ParsedSqlStatement {
+
+    private static final String IDENTIFIER = "(?:[A-Za-z_][\\w$]*|`(?:[^`\\\\]|\\\\.)+`|\"(?:[^\"\\\\]|\\\\.)+\")";
+    private static final String TABLE = IDENTIFIER + "(?:\\s*\\.\\s*" + IDENTIFIER + ")?";
+    private static final String COLUMNS = "\\(\\s*" + IDENTIFIER + "(?:\\s*,\\s*" + IDENTIFIER + ")*\\s*\\)";
+    private static final Pattern INSERT_VALUES = Pattern.compile("^\\s*(INSERT\\s+INTO\\s+(?:TABLE\\s+)?" + TABLE + "(?:\\s*" + COLUMNS + ")?)"
+                    + "\\s+VALUES\\s*(\\(.*\\))\\s*$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    /**
+     * Error codes with which the server rejects the rows of an insert while reading and checking them, before the
+     * block is written.
+     */
+    private static final Set<Integer> REJECTED_ROWS = new HashSet<>(Arrays.asList(
+            6,   // CANNOT_PARSE_TEXT
+            7,   // NUMBER_OF_COLUMNS_DOESNT_MATCH
+            8,   // THERE_IS_NO_COLUMN
+            16,  // NO_SUCH_COLUMN_IN_TABLE
+            26,  // CANNOT_PARSE_QUOTED_STRING
+            27,  // CANNOT_PARSE_INPUT_ASSERTION_FAILED
+            32,  // ATTEMPT_TO_READ_AFTER_EOF
+            38,  // CANNOT_PARSE_DATE
+            41,  // CANNOT_PARSE_DATETIME
+            47,  // UNKNOWN_IDENTIFIER
+            53,  // TYPE_MISMATCH
+            62,  // SYNTAX_ERROR
+            70,  // CANNOT_CONVERT_TYPE
+            72,  // CANNOT_PARSE_NUMBER
+            117, // INCORRECT_DATA
+            130, // CANNOT_READ_ARRAY_FROM_TEXT
+            321, // VALUE_IS_OUT_OF_RANGE_OF_DATA_TYPE
+            349, // CANNOT_INSERT_NULL_IN_ORDINARY_COLUMN
+            469, // VIOLATED_CONSTRAINT
+            691  // UNKNOWN_ELEMENT_OF_ENUM
+    ));
+
+    private final String prefix;
+    private final List<ParsedSqlStatement> statements;
+    private final List<String> tuples;
+    private final int rows;
+    private ParsedSqlStatement failedStatement;
+
+    private ClickHouseCoalescedInsertStatement(ParsedSqlStatement first, String prefix, String values, Delimiter delimiter,
+                                               List<ParsedSqlStatement> statements, List<String> tuples, int rows) {
+        super(first.getPos(), first.getLine(), first.getCol(), prefix + " VALUES " + values, delimiter, first.canExecuteInTransaction(), false);
+        this.prefix = prefix;
+        this.statements = statements;
+        this.tuples = tuples;
+        this.rows = rows;
+    }
+
+    @Override
+    public Results execute(JdbcTemplate jdbcTemplate, SqlScriptExecutor sqlScriptExecutor, Configuration config) {
+        failedStatement = null;
+        String token = UUID.randomUUID().toString();
+        // A block of at most max_insert_block_size rows is not split
+        Results results = jdbcTemplate.executeStatement(prefix + deduplicatedBy(token) + ", max_insert_block_size = " + Math.max(rows, 1)
+                + " VALUES " + String.join(",\n", tuples));
+        if (results.getException() == null) {
+            return results;
+        }
+        if (!isRejectedRows(results.getException())) {
+            LOG.warn("Insert of " + statements.size() + " coalesced statements at line " + getLineNumber() + " failed and may have been stored."
+                    + " Not executing them one by one, as that could store their rows twice");
+            return results;
+        }
+
+        LOG.debug("Insert of " + statements.size() + " coalesced statements at line " + getLineNumber() + " failed. Executing them one by one: "
+                + results.getException().getMessage());
+        Results all = new Results();
+        for (int i = 0; i < statements.size(); i++) {
+            Results single = jdbcTemplate.executeStatement(prefix + deduplicatedBy(token + "-" + i) + " VALUES " + tuples.get(i));
+            if (single.getException() != null) {
+                failedStatement = statements.get(i);
+                return single;
+            }
+            for (Result result : single.getResults()) {
+                all.addResult(result);
+            }
+        }
+        return all;
+    }
+
+    /**
+     * @return Whether the server rejected the rows of the insert, in which case none of them were stored.
+     */
+    static boolean isRejectedRows(SQLException e) {
+        return !(e instanceof SQLTransientException) && !(e instanceof SQLRecoverableException)
+                && REJECTED_ROWS.contains(e.getErrorCode());
+    }
+
+    private static String deduplicatedBy(String token) {
+        return " SETTINGS insert_deduplicate = 1, insert_deduplication_token = '" + token + "'";
+    }
+
+    /**
+     * @return The original statement that failed on its own after the merged insert failed, if any.
+     */
+    ParsedSqlStatement getFailedStatement() {
+        return failedStatement;
+    }
+
+    /**
+     * Merges a run of inserts as long as they share the same target, columns and transaction mode and stay
+     * within the row and byte limits. Bytes are counted in UTF-8, as sent to the server.
+     */
+    static class Builder {
+        private final Delimiter delimiter;
+        private final int maxRows;
+        private final long maxBytes;
+        private final String prefix;
+        private final List<ParsedSqlStatement> statements = new ArrayList<>();
+        private final List<String> tuples = new ArrayList<>();
+        private int rows;
+        private long bytes;
+
+        private Builder(Delimiter delimiter, int maxRows, long maxBytes, String prefix) {
+            this.delimiter = delimiter;
+            this.maxRows = maxRows;
+            this.maxBytes = maxBytes;
+            this.prefix = prefix;
+            this.bytes = utf8Length(prefix + " VALUES ");
+        }
+
+        /**
+         * @return A builder starting with this statement, or {@code null} if it is not a plain INSERT ... VALUES.
+         */
+        static Builder start(SqlStatement statement, Delimiter delimiter, int maxRows, long maxBytes) {
+            Matcher matcher = matchInsertValues(statement);
+            if (matcher == null) {
+                return null;
+            }
+            Builder builder = new Builder(delimiter, maxRows, maxBytes, normalize(matcher.group(1)));
+            builder.append((ParsedSqlStatement) statement, matcher.group(2));
+            return builder;
+        }
+
+        /**
+         * @return {@code false} if this statement cannot be merged with the previous ones.
+         */
+        boolean add(SqlStatement statement) {
+            Matcher matcher = matchInsertValues(statement);
+            if (matcher == null || !prefix.equals(normalize(matcher.group(1)))
+                    || statement.canExecuteInTransaction() != statements.get(0).canExecuteInTransaction()) {
+                return false;
+            }
+            String values = matcher.group(2);
+            if (rows + countTuples(values) > maxRows || bytes + 2 + utf8Length(values) > maxBytes) {
+                return false;
+            }
+            append((ParsedSqlStatement) statement, values);
+            return true;
+        }
+
+        private void append(ParsedSqlStatement statement, String values) {
+            if (!tuples.isEmpty()) {
+                // The ",\n" separator
+                bytes += 2;
+            }
+            tuples.add(values);
+            bytes += utf8Length(values);
+            rows += countTuples(values);
+            statements.add(statement);
+        }
+
+        SqlStatement build() {
+            if (statements.size() == 1) {
+                return statements.get(0);
+            }
+            return new ClickHouseCoalescedInsertStatement(statements.get(0), prefix, String.join(",\n", tuples), delimiter, statements, tuples, rows);
+        }
+
+        private static Matcher matchInsertValues(SqlStatement statement) {
+            if (statement == null || statement.getClass() != ParsedSqlStatement.class) {
+                return null;
+            }
+            Matcher matcher = INSERT_VALUES.matcher(statement.getSql());
+            return matcher.find() ? matcher : null;
+        }
+
+        private static String normalize(String prefix) {
+            return prefix.trim().replaceAll("\\s+", " ");
+        }
+
+        private static long utf8Length(String value) {
+            return value.getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        /**
+         * Counts the top-level tuples of a VALUES clause, skipping over string literals and quoted identifiers.
+         */
+        static int countTuples(String tuples) {
+            int count = 0;
+            int depth = 0;
+            char quote = 0;
+            for (int i = 0; i < tuples.length(); i++) {
+                char c = tuples.charAt(i);
+                if (quote != 0) {
+                    if (c == '\\') {
+                        i++;
+                    } else if (c == quote) {
+                        quote = 0;
+                    }
+                } else if (c == '\'' || c == '`' || c == '"') {
+                    quote = c;
+                } else if (c == '(') {
+                    if (depth++ == 0) {
+                        count++;
+                    }
+                } else if (c == ')') {
+                    depth--;
+                }
+            }
+            return count;
+        }
+    }
+}
@@ -21,19 +21,50 @@
 package org.flywaydb.community.database.clickhouse;
 
 import lombok.Getter;
+import org.flywaydb.core.api.FlywayException;
 import org.flywaydb.core.extensibility.ConfigurationExtension;
 
+import java.util.Arrays;
+import java.util.Locale;
 import java.util.Map;
 
 @Getter
 public class ClickHouseConfigurationExtension implements ConfigurationExtension {
     private static final String CLUSTER_NAME = "flyway.clickhouse.clusterName";
     private static final String ZOOKEEPER_PATH = "flyway.clickhouse.zookeeperPath";
+    private static final String CLEAN_PARALLELISM = "flyway.clickhouse.cleanParallelism";
+    private static final String CLEAN_ON_CLUSTER = "flyway.clickhouse.cleanOnCluster";
+    private static final String CLEAN_SYNC = "flyway.clickhouse.cleanSync";
+    private static final String CLEAN_MODE = "flyway.clickhouse.cleanMode";
+    private static final String LOCK_ENABLED = "flyway.clickhouse.lockEnabled";
+    private static final String LOCK_LEASE_MS = "flyway.clickhouse.lockLeaseMs";
+    private static final String LOCK_POLL_INTERVAL_MS = "flyway.clickhouse.lockPollIntervalMs";
+    private static final String HISTORY_TABLE_LAYOUT = "flyway.clickhouse.historyTableLayout";
+    private static final String DISTRIBUTED_DDL_TIMEOUT_MS = "flyway.clickhouse.distributedDdlTimeoutMs";
+    private static final String MUTATION_TIMEOUT_MS = "flyway.clickhouse.mutationTimeoutMs";
+    private static final String INSERT_COALESCE_MAX_ROWS = "flyway.clickhouse.insertCoalesceMaxRows";
+    private static final String INSERT_COALESCE_MAX_BYTES = "flyway.clickhouse.insertCoalesceMaxBytes";
+    private static final String REPLICA_SYNC_PARALLELISM = "flyway.clickhouse.replicaSyncParallelism";
+    private static final String REPLICA_SYNC_TIMEOUT_MS = "flyway.clickhouse.replicaSyncTimeoutMs";
 
     private static final String ZOOKEEPER_PATH_DEFAULT_VALUE = "/clickhouse/tables/{shard}/{database}/{table}";
 
     private String clusterName;
     private String zookeeperPath = ZOOKEEPER_PATH_DEFAULT_VALUE;
+    private int cleanParallelism = 1;
+    private boolean cleanOnCluster = true;
+    private boolean cleanSync;
+    private ClickHouseCleanMode cleanMode = ClickHouseCleanMode.TABLES;
+    private boolean lockEnabled;
+    private long lockLeaseMs = 60000;
+    private long lockPollIntervalMs = 500;
+    private ClickHouseHistoryTableLayout historyTableLayout = ClickHouseHistoryTableLayout.MERGE_TREE;
+    private long distributedDdlTimeoutMs = 600000;
+    private long mutationTimeoutMs;
+    private int insertCoalesceMaxRows;
+    private long insertCoalesceMaxBytes = 1048576;
+    private int replicaSyncParallelism = 4;
+    private long replicaSyncTimeoutMs = 300000;
 
     @Override
     public String getNamespace() {
@@ -51,6 +82,87 @@ public class ClickHouseConfigurationExtension implements ConfigurationExtension
         if (zookeeperPath != null) {
             this.zookeeperPath = zookeeperPath;
         }
+
+        String cleanParallelism = configuration.remove(CLEAN_PARALLELISM);
+        if (cleanParallelism != null) {
+            try {
+                this.cleanParallelism = Integer.parseInt(cleanParallelism);
+            } catch (NumberFormatException e) {
+                throw new FlywayException("Invalid value for " + CLEAN_PARALLELISM + ": " + cleanParallelism + ". Expected a number of connections", e);
+            }
+        }
+
+        String cleanOnCluster = configuration.remove(CLEAN_ON_CLUSTER);
+        if (cleanOnCluster != null) {
+            this.cleanOnCluster = Boolean.parseBoolean(cleanOnCluster);
+        }
+
+        String cleanSync = configuration.remove(CLEAN_SYNC);
+        if (cleanSync != null) {
+            this.cleanSync = Boolean.parseBoolean(cleanSync);
+        }
+
+        String cleanMode = configuration.remove(CLEAN_MODE);
+        if (cleanMode != null) {
+            try {
+                this.cleanMode = ClickHouseCleanMode.valueOf(cleanMode.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new FlywayException("Invalid value for " + CLEAN_MODE + ": " + cleanMode
+                        + ". Expected one of " + Arrays.toString(ClickHouseCleanMode.values()), e);
+            }
+        }
+
+        String lockEnabled = configuration.remove(LOCK_ENABLED);
+        if (lockEnabled != null) {
+            this.lockEnabled = Boolean.parseBoolean(lockEnabled);
+        }
+
+        this.lockLeaseMs = parseMillis(configuration, LOCK_LEASE_MS, lockLeaseMs);
+        if (lockLeaseMs < 1000) {
+            throw new FlywayException("Invalid value for " + LOCK_LEASE_MS + ": " + lockLeaseMs + ". Expected at least 1000 milliseconds");
+        }
+        this.lockPollIntervalMs = parseMillis(configuration, LOCK_POLL_INTERVAL_MS, lockPollIntervalMs);
+
+        String historyTableLayout = configuration.remove(HISTORY_TABLE_LAYOUT);
+        if (historyTableLayout != null) {
+            try {
+                this.historyTableLayout = ClickHouseHistoryTableLayout.valueOf(historyTableLayout.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new FlywayException("Invalid value for " + HISTORY_TABLE_LAYOUT + ": " + historyTableLayout
+                        + ". Expected one of " + Arrays.toString(ClickHouseHistoryTableLayout.values()), e);
+            }
+        }
+
+        this.distributedDdlTimeoutMs = parseMillis(configuration, DISTRIBUTED_DDL_TIMEOUT_MS, distributedDdlTimeoutMs);
+        this.mutationTimeoutMs = parseMillis(configuration, MUTATION_TIMEOUT_MS, mutationTimeoutMs);
+
+        String insertCoalesceMaxRows = configuration.remove(INSERT_COALESCE_MAX_ROWS);
+        if (insertCoalesceMaxRows != null) {
+            try {
+                this.insertCoalesceMaxRows = Integer.parseInt(insertCoalesceMaxRows.trim());
+            } catch (NumberFormatException e) {
+                throw new FlywayException("Invalid value for " + INSERT_COALESCE_MAX_ROWS + ": " + insertCoalesceMaxRows + ". Expected a number of rows", e);
+            }
+        }
+
+        String insertCoalesceMaxBytes = configuration.remove(INSERT_COALESCE_MAX_BYTES);
+        if (insertCoalesceMaxBytes != null) {
+            try {
+                this.insertCoalesceMaxBytes = Long.parseLong(insertCoalesceMaxBytes.trim());
+            } catch (NumberFormatException e) {
+                throw new FlywayException("Invalid value for " + INSERT_COALESCE_MAX_BYTES + ": " + insertCoalesceMaxBytes + ". Expected a number of bytes", e);
+            }
+        }
+
+        String replicaSyncParallelism = configuration.remove(REPLICA_SYNC_PARALLELISM);
+        if (replicaSyncParallelism != null) {
+            try {
+                this.replicaSyncParallelism = Integer.parseInt(replicaSyncParallelism.trim());
+            } catch (NumberFormatException e) {
+                throw new FlywayException("Invalid value for " + REPLICA_SYNC_PARALLELISM + ": " + replicaSyncParallelism + ". Expected a number of connections", e);
+            }
+        }
+        this.replicaSyncTimeoutMs = parseMillis(configuration, REPLICA_SYNC_TIMEOUT_MS, replicaSyncTimeoutMs);
     }
 
     @Override
@@ -61,6 +173,64 @@ public class ClickHouseConfigurationExtension implements ConfigurationExtension
         if ("FLYWAY_CLICKHOUSE_ZOOKEEPER_PATH".equals(environmentVariable)) {
             return ZOOKEEPER_PATH;
         }
+        if ("FLYWAY_CLICKHOUSE_CLEAN_PARALLELISM".equals(environmentVariable)) {
+            return CLEAN_PARALLELISM;
+        }
+        if ("FLYWAY_CLICKHOUSE_CLEAN_ON_CLUSTER".equals(environmentVariable)) {
+            return CLEAN_ON_CLUSTER;
+        }
+        if ("FLYWAY_CLICKHOUSE_CLEAN_SYNC".equals(environmentVariable)) {
+            return CLEAN_SYNC;
+        }
+        if ("FLYWAY_CLICKHOUSE_CLEAN_MODE".equals(environmentVariable)) {
+            return CLEAN_MODE;
+        }
+        if ("FLYWAY_CLICKHOUSE_LOCK_ENABLED".equals(environmentVariable)) {
+            return LOCK_ENABLED;
+        }
+        if ("FLYWAY_CLICKHOUSE_LOCK_LEASE_MS".equals(environmentVariable)) {
+            return LOCK_LEASE_MS;
+        }
+        if ("FLYWAY_CLICKHOUSE_LOCK_POLL_INTERVAL_MS".equals(environmentVariable)) {
+            return LOCK_POLL_INTERVAL_MS;
+        }
+        if ("FLYWAY_CLICKHOUSE_HISTORY_TABLE_LAYOUT".equals(environmentVariable)) {
+            return HISTORY_TABLE_LAYOUT;
+        }
+        if ("FLYWAY_CLICKHOUSE_DISTRIBUTED_DDL_TIMEOUT_MS".equals(environmentVariable)) {
+            return DISTRIBUTED_DDL_TIMEOUT_MS;
+        }
+        if ("FLYWAY_CLICKHOUSE_MUTATION_TIMEOUT_MS".equals(environmentVariable)) {
+            return MUTATION_TIMEOUT_MS;
+        }
+        if ("FLYWAY_CLICKHOUSE_INSERT_COALESCE_MAX_ROWS".equals(environmentVariable)) {
+            return INSERT_COALESCE_MAX_ROWS;
+        }
+        if ("FLYWAY_CLICKHOUSE_INSERT_COALESCE_MAX_BYTES".equals(environmentVariable)) {
+            return INSERT_COALESCE_MAX_BYTES;
+        }
+        if ("FLYWAY_CLICKHOUSE_REPLICA_SYNC_PARALLELISM".equals(environmentVariable)) {
+            return REPLICA_SYNC_PARALLELISM;
+        }
+        if ("FLYWAY_CLICKHOUSE_REPLICA_SYNC_TIMEOUT_MS".equals(environmentVariable)) {
+            return REPLICA_SYNC_TIMEOUT_MS;
+        }
         return null;
     }
+
+    private static long parseMillis(Map<String, String> configuration, String key, long defaultValue) {
+        String value = configuration.remove(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            long millis = Long.parseLong(value.trim());
+            if (millis < 0) {
+                throw new FlywayException("Invalid value for " + key + ": " + value + ". Expected a non-negative number of milliseconds");
+            }
+            return millis;
+        } catch (NumberFormatException e) {
+            throw new FlywayException("Invalid value for " + key + ": " + value + ". Expected a number of milliseconds", e);
+        }
+    }
 }
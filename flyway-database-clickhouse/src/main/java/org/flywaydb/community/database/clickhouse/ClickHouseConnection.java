@@ -21,9 +21,11 @@
 package org.flywaydb.community.database.clickhouse;
 
 import org.flywaydb.core.internal.database.base.Connection;
+import org.flywaydb.core.internal.database.base.Table;
 
 import java.sql.SQLException;
 import java.util.Optional;
+import java.util.concurrent.Callable;
 
 public class ClickHouseConnection extends Connection<ClickHouseDatabase> {
     private static final String DEFAULT_CATALOG_TERM = "database";
@@ -63,4 +65,12 @@ public class ClickHouseConnection extends Connection<ClickHouseDatabase> {
     public ClickHouseSchema getSchema(String name) {
         return new ClickHouseSchema(jdbcTemplate, database, name);
     }
+
+    @Override
+    public <T> T lock(Table table, Callable<T> callable) {
+        if (!database.isLockEnabled()) {
+            return super.lock(table, callable);
+        }
+        return new ClickHouseLockTemplate(database, (ClickHouseTable) table).execute(callable);
+    }
 }
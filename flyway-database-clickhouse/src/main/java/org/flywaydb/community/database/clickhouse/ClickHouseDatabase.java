@@ -20,20 +20,38 @@
 
 package org.flywaydb.community.database.clickhouse;
 
+import org.flywaydb.core.api.FlywayException;
 import org.flywaydb.core.api.configuration.Configuration;
 import org.flywaydb.core.internal.database.base.Database;
 import org.flywaydb.core.internal.database.base.Table;
 import org.flywaydb.core.internal.exception.FlywaySqlException;
 import org.flywaydb.core.internal.jdbc.JdbcConnectionFactory;
 import org.flywaydb.core.internal.jdbc.StatementInterceptor;
+import org.flywaydb.core.internal.util.Pair;
 import org.flywaydb.core.internal.util.StringUtils;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ClickHouseDatabase extends Database<ClickHouseConnection> {
 
+    private static final String HISTORY_COLUMNS =
+            "installed_rank, version, description, type, script, checksum, installed_by, installed_on, execution_time, success";
+
+    /**
+     * Lock tables known to exist, by JDBC URL. Checking or creating one is DDL, run ON CLUSTER when clustered, so it is
+     * done once per URL and per JVM.
+     */
+    private static final Set<String> READY_LOCK_TABLES = ConcurrentHashMap.newKeySet();
+
     private ClickHouseConnection systemConnection;
+    private ClickHouseCatalogSnapshot catalogSnapshot;
+    private final Map<String, Long> releasedLockVersions = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> replacingHistoryTables = new ConcurrentHashMap<>();
 
     @Override
     public boolean useSingleConnection() {
@@ -52,6 +70,84 @@ public class ClickHouseDatabase extends Database<ClickHouseConnection> {
         return configuration.getPluginRegister().getPlugin(ClickHouseConfigurationExtension.class).getZookeeperPath();
     }
 
+    public boolean isClustered() {
+        return StringUtils.hasText(getClusterName());
+    }
+
+    public boolean isLockEnabled() {
+        return configuration.getPluginRegister().getPlugin(ClickHouseConfigurationExtension.class).isLockEnabled();
+    }
+
+    public long getLockLeaseMillis() {
+        return configuration.getPluginRegister().getPlugin(ClickHouseConfigurationExtension.class).getLockLeaseMs();
+    }
+
+    public long getLockPollIntervalMillis() {
+        return configuration.getPluginRegister().getPlugin(ClickHouseConfigurationExtension.class).getLockPollIntervalMs();
+    }
+
+    public int getCleanParallelism() {
+        return configuration.getPluginRegister().getPlugin(ClickHouseConfigurationExtension.class).getCleanParallelism();
+    }
+
+    public boolean isCleanOnCluster() {
+        return configuration.getPluginRegister().getPlugin(ClickHouseConfigurationExtension.class).isCleanOnCluster();
+    }
+
+    public boolean isCleanSync() {
+        return configuration.getPluginRegister().getPlugin(ClickHouseConfigurationExtension.class).isCleanSync();
+    }
+
+    public ClickHouseHistoryTableLayout getHistoryTableLayout() {
+        return configuration.getPluginRegister().getPlugin(ClickHouseConfigurationExtension.class).getHistoryTableLayout();
+    }
+
+    private boolean isReplacingHistoryTable() {
+        return getHistoryTableLayout() == ClickHouseHistoryTableLayout.REPLACING;
+    }
+
+    private boolean isReplacingHistoryTable(Table table) {
+        return isReplacingHistoryTable(table.getSchema().getName(), table.getName());
+    }
+
+    /**
+     * Whether the schema history table has the {@link ClickHouseHistoryTableLayout#REPLACING} layout, read from its
+     * columns when it already exists, as the statements have to match the table rather than the configuration.
+     *
+     * @throws FlywayException if the existing table does not match the configured history table layout.
+     */
+    boolean isReplacingHistoryTable(String schema, String table) {
+        boolean configured = isReplacingHistoryTable();
+        String key = quote(schema, table);
+        Boolean replacing = replacingHistoryTables.get(key);
+        if (replacing == null) {
+            List<String> columns;
+            try {
+                columns = getSystemConnection().getJdbcTemplate().queryForStringList(
+                        "SELECT name FROM system.columns WHERE database = ? AND table = ?", schema, table);
+            } catch (SQLException e) {
+                throw new FlywaySqlException("Unable to read the columns of schema history table " + key, e);
+            }
+            if (columns.isEmpty()) {
+                // Not created yet, it will be created with the configured layout
+                return configured;
+            }
+            replacing = columns.contains("row_version") && columns.contains("is_deleted");
+            replacingHistoryTables.put(key, replacing);
+        }
+        if (replacing != configured) {
+            throw new FlywayException("Schema history table " + key + " has the "
+                    + (replacing ? ClickHouseHistoryTableLayout.REPLACING : ClickHouseHistoryTableLayout.MERGE_TREE)
+                    + " layout, but historyTableLayout is " + getHistoryTableLayout()
+                    + ". Set historyTableLayout to the layout the table was created with");
+        }
+        return replacing;
+    }
+
+    public ClickHouseCleanMode getCleanMode() {
+        return configuration.getPluginRegister().getPlugin(ClickHouseConfigurationExtension.class).getCleanMode();
+    }
+
     public ClickHouseConnection getSystemConnection() {
         // Queries on system.XX fail with "Code: 81. DB::Exception: Database the_database doesn't exist. (UNKNOWN_DATABASE) (version 23.7.1.2470 (official build))"
         // in case the current catalog (database) is not yet created.
@@ -60,17 +156,95 @@ public class ClickHouseDatabase extends Database<ClickHouseConnection> {
         //  * jdbcTemplate cannot be used, as this would change the location of the new tables.
         // We had to introduce a separate connection, reserved to system database access.
         if (systemConnection == null) {
-            Connection connection = jdbcConnectionFactory.openConnection();
-            try {
-                systemConnection = doGetConnection(connection);
-                systemConnection.doChangeCurrentSchemaOrSearchPathTo("system");
-            } catch (SQLException e) {
-                throw new FlywaySqlException("Unable to switch connection to read-only", e);
-            }
+            systemConnection = openSystemConnection();
         }
         return systemConnection;
     }
 
+    /**
+     * Opens a new connection on the system database, for work running next to the main connection.
+     * The caller is responsible for closing it.
+     */
+    ClickHouseConnection openSystemConnection() {
+        Connection connection = jdbcConnectionFactory.openConnection();
+        try {
+            ClickHouseConnection clickHouseConnection = doGetConnection(connection);
+            clickHouseConnection.doChangeCurrentSchemaOrSearchPathTo("system");
+            return clickHouseConnection;
+        } catch (SQLException e) {
+            throw new FlywaySqlException("Unable to switch connection to read-only", e);
+        }
+    }
+
+    /**
+     * @return The databases and tables of the server, shared by all existence checks of this Flyway operation.
+     */
+    ClickHouseCatalogSnapshot getCatalogSnapshot() {
+        if (catalogSnapshot == null) {
+            catalogSnapshot = new ClickHouseCatalogSnapshot(this);
+        }
+        return catalogSnapshot;
+    }
+
+    /**
+     * Creates the lock table of {@link ClickHouseLockTemplate} in the given schema, unless it is already known to exist.
+     */
+    void ensureLockTable(String schema, String lockTable) {
+        String key = getLockTableCacheKey() + lockTable;
+        if (READY_LOCK_TABLES.contains(key)) {
+            return;
+        }
+        try {
+            if (!getCatalogSnapshot().getTables(schema).contains(ClickHouseLockTemplate.LOCK_TABLE_NAME)) {
+                createLockTable(lockTable);
+            }
+        } catch (SQLException e) {
+            throw new FlywaySqlException("Unable to create lock table " + lockTable, e);
+        }
+        READY_LOCK_TABLES.add(key);
+    }
+
+    private void createLockTable(String lockTable) throws SQLException {
+        String clusterName = getClusterName();
+        boolean isClustered = isClustered();
+        String engine = isClustered
+                ? "ReplicatedReplacingMergeTree('" + getZookeeperPath() + "', '{replica}', version)"
+                : "ReplacingMergeTree(version)";
+        getSystemConnection().getJdbcTemplate().execute("CREATE TABLE IF NOT EXISTS " + lockTable + (isClustered ? (" ON CLUSTER " + clusterName) : "") + "(" +
+                "    lock_name String," +
+                "    version UInt64," +
+                "    owner String," +
+                "    expires_at DateTime64(3)" +
+                ") ENGINE = " + engine +
+                " ORDER BY lock_name" +
+                // Replicated tables deduplicate inserts by default, plain ones only with a window
+                (isClustered ? "" : " SETTINGS non_replicated_deduplication_window = 1000"));
+        ClickHouseCatalogSnapshot.invalidate();
+    }
+
+    /**
+     * Forgets the lock tables known to exist on this server, after their database was dropped.
+     */
+    void lockTablesDropped() {
+        String prefix = getLockTableCacheKey();
+        READY_LOCK_TABLES.removeIf(key -> key.startsWith(prefix));
+    }
+
+    private String getLockTableCacheKey() {
+        try {
+            return getJdbcMetaData().getURL() + "#";
+        } catch (SQLException e) {
+            throw new FlywaySqlException("Unable to read the JDBC URL", e);
+        }
+    }
+
+    /**
+     * @return The version at which this process last released each lock, claimed first on the next acquisition.
+     */
+    Map<String, Long> getReleasedLockVersions() {
+        return releasedLockVersions;
+    }
+
     @Override
     protected ClickHouseConnection doGetConnection(Connection connection) {
         return new ClickHouseConnection(this, connection);
@@ -118,6 +292,7 @@ public class ClickHouseDatabase extends Database<ClickHouseConnection> {
     public String getRawCreateScript(Table table, boolean baseline) {
         String clusterName = getClusterName();
         boolean isClustered = StringUtils.hasText(clusterName);
+        boolean isReplacing = isReplacingHistoryTable();
 
         String script = "CREATE TABLE IF NOT EXISTS " + table + (isClustered ? (" ON CLUSTER " + clusterName) : "") + "(" +
                 "    installed_rank Int32," +
@@ -130,19 +305,64 @@ public class ClickHouseDatabase extends Database<ClickHouseConnection> {
                 "    installed_on DateTime DEFAULT now()," +
                 "    execution_time Int32," +
                 "    success Bool" +
+                (isReplacing ? "," +
+                        "    row_version DateTime64(9) DEFAULT now64(9)," +
+                        "    is_deleted UInt8 DEFAULT 0" : "") +
                 ")";
 
         String engine;
 
-        if (isClustered) {
+        if (isReplacing) {
+            // is_deleted is filtered by the queries, the engine parameter for it needs ClickHouse 23.2 or later
+            engine = isClustered
+                    ? "ReplicatedReplacingMergeTree('" + getZookeeperPath() + "', '{replica}', row_version)"
+                    : "ReplacingMergeTree(row_version)";
+        } else if (isClustered) {
             engine = "ReplicatedMergeTree('" + getZookeeperPath() + "', '{replica}')";
         } else {
             engine = "MergeTree";
         }
 
         script += " ENGINE = " + engine +
-                " PRIMARY KEY (script);";
+                (isReplacing ? " ORDER BY (installed_rank);" : " PRIMARY KEY (script);");
 
         return script + (baseline ? getBaselineStatement(table) + ";" : "");
     }
+
+    @Override
+    public String getSelectStatement(Table table) {
+        if (!isReplacingHistoryTable(table)) {
+            return super.getSelectStatement(table);
+        }
+        // FINAL collapses every rank to its latest row_version, a range read on the sort key
+        return "SELECT installed_rank, version, description, type, script, checksum, installed_on, installed_by, execution_time, success"
+                + " FROM " + table + " FINAL"
+                + " WHERE installed_rank > ? AND is_deleted = 0"
+                + " ORDER BY installed_rank";
+    }
+
+    @Override
+    public String getUpdateStatement(Table table) {
+        if (!isReplacingHistoryTable(table)) {
+            return super.getUpdateStatement(table);
+        }
+        // Same parameters as the inherited UPDATE: description, type, checksum, installed_rank.
+        // The new row_version is derived from the row it replaces rather than from a clock, so that it always wins
+        return "INSERT INTO " + table + " (" + HISTORY_COLUMNS + ", row_version, is_deleted)"
+                + " SELECT installed_rank, version, ?, ?, script, ?, installed_by, installed_on, execution_time, success, addNanoseconds(row_version, 1), 0"
+                + " FROM " + table + " FINAL"
+                + " WHERE installed_rank = ? AND is_deleted = 0";
+    }
+
+    @Override
+    public Pair<String, Object> getDeleteStatement(Table table, boolean version, String filter) {
+        if (!isReplacingHistoryTable(table)) {
+            return super.getDeleteStatement(table, version, filter);
+        }
+        return Pair.of("INSERT INTO " + table + " (" + HISTORY_COLUMNS + ", row_version, is_deleted)"
+                + " SELECT " + HISTORY_COLUMNS + ", addNanoseconds(row_version, 1), 1"
+                + " FROM " + table + " FINAL"
+                + " WHERE success = " + getBooleanFalse() + " AND is_deleted = 0"
+                + " AND " + (version ? "version" : "description") + " = ?", filter);
+    }
 }
@@ -0,0 +1,276 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-clickhouse
+ * ========================================================================
+ * Copyright (C) 2010 - 2025 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+
+package org.flywaydb.community.database.clickhouse;
+
+import lombok.CustomLog;
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.api.configuration.Configuration;
+import org.flywaydb.core.internal.exception.FlywaySqlException;
+import org.flywaydb.core.internal.jdbc.JdbcTemplate;
+import org.flywaydb.core.internal.jdbc.Results;
+import org.flywaydb.core.internal.sqlscript.SqlScriptExecutor;
+import org.flywaydb.core.internal.sqlscript.SqlStatement;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Waits until every host of the cluster has executed an ON CLUSTER statement, by following its entries in
+ * {@code system.distributed_ddl_queue}. That table reports the status of all hosts of an entry from Keeper, so a
+ * single query per poll covers the whole cluster.
+ * <p>
+ * The statement runs with a unique {@code log_comment}, which the server stores with the settings of the entries it
+ * creates, so that they are told apart from those of other sessions. An entry named by a
+ * {@code distributed_ddl_task_timeout} error is waited for instead of failing the migration. All of this happens while
+ * the statement executes, so the statement callbacks only see its final outcome.
+ */
+@CustomLog
+class ClickHouseDistributedDdlTracker {
+
+    private static final Pattern ON_CLUSTER = Pattern.compile("\\bON\\s+CLUSTER\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern TASK_ENTRY = Pattern.compile("/(query-\\d+)\\b");
+    private static final int TIMEOUT_EXCEEDED = 159;
+    private static final long POLL_INTERVAL_MILLIS = 1000;
+    private static final long REPORT_INTERVAL_MILLIS = 10000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String clusterName;
+    private final long timeoutMillis;
+    private final String marker = "flyway-" + UUID.randomUUID();
+
+    ClickHouseDistributedDdlTracker(JdbcTemplate jdbcTemplate, String clusterName, long timeoutMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.clusterName = clusterName;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    static boolean isOnCluster(SqlStatement sqlStatement) {
+        return ON_CLUSTER.matcher(sqlStatement.getSql()).find();
+    }
+
+    /**
+     * @return The statement, executed so that it only completes once all hosts of the cluster executed it.
+     */
+    SqlStatement track(SqlStatement sqlStatement) {
+        return new TrackedStatement(sqlStatement);
+    }
+
+    /**
+     * @return The entry that timed out on the initiator, or {@code null} if the error is not such a timeout.
+     */
+    static String getTimedOutEntry(SQLException e) {
+        if (e == null || (e.getErrorCode() != TIMEOUT_EXCEEDED && !String.valueOf(e.getMessage()).contains("distributed_ddl_task_timeout"))) {
+            return null;
+        }
+        Matcher matcher = TASK_ENTRY.matcher(String.valueOf(e.getMessage()));
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private Results execute(SqlStatement sqlStatement, SqlScriptExecutor sqlScriptExecutor, Configuration config) {
+        String previousComment;
+        try {
+            previousComment = jdbcTemplate.queryForString("SELECT value FROM system.settings WHERE name = 'log_comment'");
+            jdbcTemplate.execute("SET log_comment = " + literal(marker));
+        } catch (SQLException e) {
+            throw new FlywaySqlException("Unable to tag ON CLUSTER statement at line " + sqlStatement.getLineNumber(), e);
+        }
+        Results results;
+        try {
+            results = sqlStatement.execute(jdbcTemplate, sqlScriptExecutor, config);
+            try {
+                if (results.getException() == null) {
+                    awaitCompletion(sqlStatement);
+                } else {
+                    String entry = getTimedOutEntry(results.getException());
+                    if (entry != null) {
+                        // The initiator gave up waiting, but the hosts keep executing the statement in the background
+                        LOG.info("ON CLUSTER statement " + entry + " exceeded distributed_ddl_task_timeout. Waiting for it to finish on all hosts");
+                        awaitCompletion(Collections.singletonList(entry));
+                        results.setException(null);
+                    }
+                }
+            } catch (FlywayException e) {
+                // Reported like any other failure of the statement
+                results.setException(new SQLException(e.getMessage(), e));
+            }
+        } catch (RuntimeException e) {
+            restoreComment(sqlStatement, previousComment, e);
+            throw e;
+        }
+        restoreComment(sqlStatement, previousComment, results.getException());
+        return results;
+    }
+
+    /**
+     * Restores log_comment, without hiding the failure of the statement if there is one.
+     */
+    private void restoreComment(SqlStatement sqlStatement, String previousComment, Exception failure) {
+        try {
+            jdbcTemplate.execute("SET log_comment = " + literal(previousComment == null ? "" : previousComment));
+        } catch (SQLException e) {
+            FlywaySqlException restoreFailure = new FlywaySqlException("Unable to restore log_comment after ON CLUSTER statement at line "
+                    + sqlStatement.getLineNumber(), e);
+            if (failure == null) {
+                throw restoreFailure;
+            }
+            failure.addSuppressed(restoreFailure);
+        }
+    }
+
+    /**
+     * Waits for the entries tagged with the marker of this tracker.
+     */
+    private void awaitCompletion(SqlStatement sqlStatement) {
+        List<String> entries;
+        try {
+            entries = jdbcTemplate.queryForStringList("SELECT DISTINCT entry FROM system.distributed_ddl_queue" +
+                    " WHERE cluster = ? AND settings['log_comment'] = ?", clusterName, marker);
+        } catch (SQLException e) {
+            throw new FlywaySqlException("Unable to read system.distributed_ddl_queue", e);
+        }
+        if (entries.isEmpty()) {
+            LOG.warn("No entry found in system.distributed_ddl_queue for the ON CLUSTER statement at line " + sqlStatement.getLineNumber()
+                    + " on " + clusterName + ". Not waiting for the other hosts to execute it");
+            return;
+        }
+        awaitCompletion(entries);
+    }
+    private void awaitCompletion(List<String> entries) {
+        String entryList = entries.stream().map(entry -> "'" + entry.replace("'", "''") + "'").collect(Collectors.joining(", "));
+        long start = System.nanoTime();
+        long lastReport = start;
+        while (true) {
+            List<HostStatus> hosts;
+            try {
+                hosts = jdbcTemplate.query("SELECT entry, host, port, ifNull(toString(status), 'Unknown'), ifNull(exception_code, 0), ifNull(exception_text, '')" +
+                                " FROM system.distributed_ddl_queue WHERE cluster = ? AND entry IN (" + entryList + ")",
+                        rs -> new HostStatus(rs.getString(1), rs.getString(2) + ":" + rs.getInt(3), rs.getString(4), rs.getInt(5), rs.getString(6)),
+                        clusterName);
+            } catch (SQLException e) {
+                throw new FlywaySqlException("Unable to read system.distributed_ddl_queue", e);
+            }
+
+            for (HostStatus host : hosts) {
+                if (host.exceptionCode != 0) {
+                    throw new FlywayException("ON CLUSTER statement " + host.entry + " failed on " + host.host
+                            + " with code " + host.exceptionCode + ": " + host.exceptionText);
+                }
+            }
+            List<HostStatus> lagging = new ArrayList<>();
+            for (HostStatus host : hosts) {
+                if (!"Finished".equals(host.status)) {
+                    lagging.add(host);
+                }
+            }
+            if (lagging.isEmpty()) {
+                LOG.debug("ON CLUSTER statement " + String.join(", ", entries) + " finished on " + hosts.size() + " hosts of " + clusterName);
+                return;
+            }
+
+            long now = System.nanoTime();
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(now - start);
+            if (elapsedMillis >= timeoutMillis) {
+                throw new FlywayException("ON CLUSTER statement " + String.join(", ", entries) + " did not finish within " + timeoutMillis
+                        + " millis on " + lagging.size() + " of " + hosts.size() + " hosts of " + clusterName + ": " + describe(lagging));
+            }
+            if (TimeUnit.NANOSECONDS.toMillis(now - lastReport) >= REPORT_INTERVAL_MILLIS) {
+                LOG.info("Waiting for " + lagging.size() + " of " + hosts.size() + " hosts of " + clusterName + " to finish ON CLUSTER statement "
+                        + String.join(", ", entries) + ": " + describe(lagging));
+                lastReport = now;
+            }
+            try {
+                Thread.sleep(Math.min(POLL_INTERVAL_MILLIS, timeoutMillis - elapsedMillis));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new FlywayException("Interrupted while waiting for ON CLUSTER statement " + String.join(", ", entries), e);
+            }
+        }
+    }
+
+    private static String literal(String value) {
+        return "'" + value.replace("\\", "\\\\").replace("'", "\\'") + "'";
+    }
+
+    private static String describe(List<HostStatus> hosts) {
+        return hosts.stream().map(host -> host.host + " (" + host.status + ")").collect(Collectors.joining(", "));
+    }
+
+    private class TrackedStatement implements SqlStatement {
+        private final SqlStatement delegate;
+
+        TrackedStatement(SqlStatement delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int getLineNumber() {
+            return delegate.getLineNumber();
+        }
+
+        @Override
+        public String getSql() {
+            return delegate.getSql();
+        }
+
+        @Override
+        public String getDelimiter() {
+            return delegate.getDelimiter();
+        }
+
+        @Override
+        public boolean canExecuteInTransaction() {
+            return delegate.canExecuteInTransaction();
+        }
+
+        @Override
+        public boolean isBatchable() {
+            return delegate.isBatchable();
+        }
+
+        @Override
+        public Results execute(JdbcTemplate jdbcTemplate, SqlScriptExecutor sqlScriptExecutor, Configuration config) {
+            return ClickHouseDistributedDdlTracker.this.execute(delegate, sqlScriptExecutor, config);
+        }
+    }
+
+    private static class HostStatus {
+        private final String entry;
+        private final String host;
+        private final String status;
+        private final int exceptionCode;
+        private final String exceptionText;
+
+        private HostStatus(String entry, String host, String status, int exceptionCode, String exceptionText) {
+            this.entry = entry;
+            this.host = host;
+            this.status = status;
+            this.exceptionCode = exceptionCode;
+            this.exceptionText = exceptionText;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-clickhouse
+ * ========================================================================
+ * Copyright (C) 2010 - 2025 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+
+package org.flywaydb.community.database.clickhouse;
+
+/**
+ * Engine and sort key of the schema history table. It must not be changed for an existing schema history table:
+ * Flyway checks it against the columns of the table and fails on a mismatch.
+ */
+public enum ClickHouseHistoryTableLayout {
+    /**
+     * MergeTree with {@code PRIMARY KEY (script)}. Repairs run UPDATE and DELETE statements, which are mutations.
+     */
+    MERGE_TREE,
+    /**
+     * ReplacingMergeTree ordered by {@code installed_rank} and versioned by {@code row_version}. Repairs insert
+     * a newer copy of a row, or a tombstone with {@code is_deleted = 1}, with the {@code row_version} of the row they
+     * replace plus one, and history is read with FINAL.
+     */
+    REPLACING
+}
@@ -0,0 +1,161 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-clickhouse
+ * ========================================================================
+ * Copyright (C) 2010 - 2025 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+
+package org.flywaydb.community.database.clickhouse;
+
+import lombok.CustomLog;
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.api.configuration.Configuration;
+import org.flywaydb.core.api.resource.Resource;
+import org.flywaydb.core.internal.jdbc.JdbcTemplate;
+import org.flywaydb.core.internal.jdbc.Result;
+import org.flywaydb.core.internal.jdbc.Results;
+import org.flywaydb.core.internal.sqlscript.Delimiter;
+import org.flywaydb.core.internal.sqlscript.ParsedSqlStatement;
+import org.flywaydb.core.internal.sqlscript.SqlScriptExecutor;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * An {@code INSERT INTO ... FROM INFILE 'file' [COMPRESSION 'gzip'] FORMAT ...} statement, as understood by
+ * clickhouse-client. The file is resolved relative to the migration, on disk or on the classpath, and streamed to
+ * the server as the body of {@code INSERT INTO ... FORMAT ...} without being loaded into memory.
+ * <p>
+ * Only the statement is part of the migration checksum, not the content of the file.
+ */
+@CustomLog
+public class ClickHouseInfileParsedStatement extends ParsedSqlStatement {
+
+    private static final Pattern INFILE = Pattern.compile("^(\\s*(?:--[^\\n]*\\n|/\\*.*?\\*/))*\\s*(INSERT\\s+INTO\\s+.+?)\\s+" +
+                    "FROM\\s+INFILE\\s+'((?:[^'\\\\]|\\\\.|'')*)'(?:\\s+COMPRESSION\\s+'(\\w+)')?\\s+(FORMAT\\s+\\w+)\\s*$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private final Resource resource;
+    private final String insertSql;
+    private final String file;
+    private final String compression;
+
+    private ClickHouseInfileParsedStatement(int pos, int line, int col, String sql, Delimiter delimiter, boolean canExecuteInTransaction,
+                                            Resource resource, Matcher matcher) {
+        super(pos, line, col, sql, delimiter, canExecuteInTransaction, false);
+        this.resource = resource;
+        this.insertSql = matcher.group(2) + " " + matcher.group(5);
+        this.file = matcher.group(3).replace("''", "'").replaceAll("\\\\(.)", "$1");
+        this.compression = matcher.group(4) == null ? "auto" : matcher.group(4).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return The statement streaming its file, or {@code null} if this is not an INSERT ... FROM INFILE.
+     */
+    static ClickHouseInfileParsedStatement of(int pos, int line, int col, String sql, Delimiter delimiter, boolean canExecuteInTransaction,
+                                              Resource resource) {
+        Matcher matcher = INFILE.matcher(sql);
+        if (!matcher.find()) {
+            return null;
+        }
+        return new ClickHouseInfileParsedStatement(pos, line, col, sql, delimiter, canExecuteInTransaction, resource, matcher);
+    }
+
+    /**
+     * @return The INSERT ... FORMAT statement the file is streamed to.
+     */
+    String getInsertSql() {
+        return insertSql;
+    }
+
+    /**
+     * @return The file, unquoted.
+     */
+    String getFile() {
+        return file;
+    }
+
+    /**
+     * @return The compression of the file, {@code auto} to detect it from its extension.
+     */
+    String getCompression() {
+        return compression;
+    }
+
+    @Override
+    public Results execute(JdbcTemplate jdbcTemplate, SqlScriptExecutor sqlScriptExecutor, Configuration config) {
+        Results results = new Results();
+        try (InputStream data = open(config);
+             PreparedStatement statement = jdbcTemplate.getConnection().prepareStatement(insertSql)) {
+            statement.setBinaryStream(1, data);
+            long rows = statement.executeUpdate();
+            LOG.debug("Streamed " + file + " into " + insertSql);
+            results.addResult(new Result(rows, null, null, getSql()));
+        } catch (SQLException e) {
+            results.setException(e);
+        } catch (IOException e) {
+            throw new FlywayException("Unable to read " + file + " for the statement at line " + getLineNumber(), e);
+        }
+        return results;
+    }
+
+    private InputStream open(Configuration config) throws IOException {
+        InputStream data = new BufferedInputStream(openFile(config));
+        boolean gzip = "gzip".equals(compression) || "gz".equals(compression)
+                || ("auto".equals(compression) && file.toLowerCase(Locale.ROOT).endsWith(".gz"));
+        if (gzip) {
+            return new GZIPInputStream(data);
+        }
+        if (!"auto".equals(compression) && !"none".equals(compression)) {
+            data.close();
+            throw new FlywayException("Unsupported COMPRESSION '" + compression + "' for " + file + ". Expected one of 'gzip', 'gz', 'none' or 'auto'");
+        }
+        return data;
+    }
+
+    private InputStream openFile(Configuration config) throws IOException {
+        File absolute = new File(file);
+        if (absolute.isAbsolute()) {
+            return new FileInputStream(absolute);
+        }
+
+        String pathOnDisk = resource.getAbsolutePathOnDisk();
+        if (pathOnDisk != null) {
+            File sibling = new File(new File(pathOnDisk).getParentFile(), file);
+            if (sibling.isFile()) {
+                return new FileInputStream(sibling);
+            }
+        }
+
+        String path = resource.getAbsolutePath();
+        int slash = path.lastIndexOf('/');
+        String classpathFile = (slash < 0 ? "" : path.substring(0, slash + 1)) + file;
+        InputStream data = config.getClassLoader().getResourceAsStream(classpathFile);
+        if (data == null) {
+            throw new FlywayException("Unable to find " + file + " next to " + resource.getFilename() + " for the statement at line " + getLineNumber());
+        }
+        return data;
+    }
+}
@@ -0,0 +1,291 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-clickhouse
+ * ========================================================================
+ * Copyright (C) 2010 - 2025 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+
+package org.flywaydb.community.database.clickhouse;
+
+import lombok.CustomLog;
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.internal.exception.FlywaySqlException;
+import org.flywaydb.core.internal.jdbc.JdbcTemplate;
+import org.flywaydb.core.internal.util.FlywayDbWebsiteLinks;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serializes Flyway operations on a schema history table through a lease in a small lock table.
+ * <p>
+ * Every change of the lease is a new row with the next version. Its insert uses
+ * {@code insert_deduplication_token = '<lock>#<version>'}, so that of several runners claiming the same version, only
+ * the first one is stored and the others are silently deduplicated. On a cluster, the table is replicated and the
+ * deduplication happens in Keeper, which turns the insert into a compare-and-set across all replicas. Reading back
+ * the latest version tells each runner whether it won. Expiry is computed with the server clock.
+ * <p>
+ * Uncontended, taking the lock costs one insert and one select, as the version released last by this process is
+ * claimed without reading it first. The first acquisition in a process also reads the latest version. An insert does
+ * not tell whether it was deduplicated, so the select cannot be saved. The lock table is only created once per JVM.
+ * <p>
+ * A background heartbeat renews the lease while the Flyway operation runs. If another runner takes the lease over in
+ * the meantime, the operation fails before its next statement, or once it returns.
+ */
+@CustomLog
+class ClickHouseLockTemplate {
+
+    static final String LOCK_TABLE_NAME = "flyway_lock";
+    private static final String RELEASED = "";
+    private static final int UNKNOWN_TABLE = 60;
+
+    /**
+     * The lock held by the Flyway operation running on the current thread, checked before each of its statements.
+     */
+    private static final ThreadLocal<ClickHouseLockTemplate> HELD = new ThreadLocal<>();
+
+    private final ClickHouseDatabase database;
+    private final String schema;
+    private final String lockTable;
+    private final String lockName;
+    private final String owner = UUID.randomUUID().toString();
+    private final AtomicLong version = new AtomicLong();
+    private volatile boolean leaseLost;
+    private volatile String takenOverBy;
+
+    ClickHouseLockTemplate(ClickHouseDatabase database, ClickHouseTable table) {
+        this.database = database;
+        this.schema = table.getSchema().getName();
+        this.lockTable = database.quote(schema, LOCK_TABLE_NAME);
+        this.lockName = table.toString();
+    }
+
+    <T> T execute(Callable<T> callable) {
+        JdbcTemplate jdbcTemplate = database.getSystemConnection().getJdbcTemplate();
+        boolean locked = false;
+        Heartbeat heartbeat = null;
+        ClickHouseLockTemplate outer = HELD.get();
+        try {
+            database.ensureLockTable(schema, lockTable);
+            try {
+                acquire(jdbcTemplate);
+            } catch (SQLException e) {
+                if (e.getErrorCode() != UNKNOWN_TABLE) {
+                    throw e;
+                }
+                // The lock table was cached as created, but another process dropped it since
+                LOG.info("Lock table " + lockTable + " no longer exists. Recreating it...");
+                database.lockTablesDropped();
+                database.ensureLockTable(schema, lockTable);
+                acquire(jdbcTemplate);
+            }
+            locked = true;
+            heartbeat = new Heartbeat();
+            HELD.set(this);
+            T result = callable.call();
+            checkLease();
+            return result;
+        } catch (SQLException e) {
+            throw new FlywaySqlException("Unable to acquire ClickHouse lock on " + lockName, e);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new FlywayException(e);
+        } finally {
+            if (locked) {
+                HELD.set(outer);
+            }
+            if (heartbeat != null) {
+                // Stopped first, so that a renewal cannot take the version meant for the release
+                heartbeat.close();
+            }
+            if (locked) {
+                release(jdbcTemplate);
+            }
+        }
+    }
+
+    /**
+     * Fails the Flyway operation running on the current thread if the lease it holds was taken over by another runner.
+     */
+    static void checkHeldLease() {
+        ClickHouseLockTemplate held = HELD.get();
+        if (held != null) {
+            held.checkLease();
+        }
+    }
+
+    private void checkLease() {
+        if (leaseLost) {
+            throw new FlywayException("Lease on " + lockName + " was taken over by " + takenOverBy + " while this Flyway operation was running,"
+                    + " after it was not renewed within " + database.getLockLeaseMillis() + " millis. Check your Flyway operation before re-trying");
+        }
+    }
+
+    private void acquire(JdbcTemplate jdbcTemplate) throws SQLException {
+        int retries = database.getConfiguration().getLockRetryCount();
+        Long released = database.getReleasedLockVersions().get(lockName);
+        LockState state = released != null ? new LockState(released, RELEASED, true) : readState(jdbcTemplate);
+        for (int attempt = 0; ; attempt++) {
+            if (state.isFree()) {
+                long claimed = state.version + 1;
+                claim(jdbcTemplate, claimed, owner, database.getLockLeaseMillis());
+                LockState current = readState(jdbcTemplate);
+                if (current.version == claimed && owner.equals(current.owner)) {
+                    if (!RELEASED.equals(state.owner)) {
+                        LOG.warn("Lease of " + state.owner + " on " + lockName + " expired. Taking it over");
+                    }
+                    version.set(claimed);
+                    LOG.debug("Acquired lock on " + lockName + " with version " + claimed);
+                    return;
+                }
+                state = current;
+            }
+            if (retries >= 0 && attempt >= retries) {
+                throw new FlywayException("Number of retries exceeded while attempting to acquire ClickHouse lock on " + lockName
+                        + ", held by " + state.owner + ". Configure the number of retries with the 'lockRetryCount' configuration option: "
+                        + FlywayDbWebsiteLinks.LOCK_RETRY_COUNT);
+            }
+            LOG.debug("Lock on " + lockName + " is held by " + state.owner + ". Waiting for it to be released");
+            try {
+                Thread.sleep(database.getLockPollIntervalMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new FlywayException("Interrupted while attempting to acquire ClickHouse lock on " + lockName, e);
+            }
+            state = readState(jdbcTemplate);
+        }
+    }
+
+    /**
+     * Extends the lease by claiming the next version again. Deduplicated, and therefore lost, if the lease already
+     * expired and another runner claimed that version first.
+     */
+    private void renew(JdbcTemplate jdbcTemplate) throws SQLException {
+        long renewed = version.get() + 1;
+        claim(jdbcTemplate, renewed, owner, database.getLockLeaseMillis());
+        LockState current = readState(jdbcTemplate);
+        if (current.version == renewed && owner.equals(current.owner)) {
+            version.set(renewed);
+            LOG.debug("Renewed lease on " + lockName + " with version " + renewed);
+        } else {
+            takenOverBy = current.owner;
+            leaseLost = true;
+            LOG.error("Lease on " + lockName + " was taken over by " + current.owner
+                    + ". It was not renewed within " + database.getLockLeaseMillis() + " millis");
+        }
+    }
+
+    private void release(JdbcTemplate jdbcTemplate) {
+        long releasedVersion = version.get() + 1;
+        try {
+            claim(jdbcTemplate, releasedVersion, RELEASED, 0);
+            database.getReleasedLockVersions().put(lockName, releasedVersion);
+            LOG.debug("Released lock on " + lockName + " with version " + releasedVersion);
+        } catch (SQLException e) {
+            // The lease runs out on its own
+            LOG.warn("Unable to release ClickHouse lock on " + lockName + ". It expires in at most " + database.getLockLeaseMillis() + " millis: " + e.getMessage());
+        }
+    }
+
+    private void claim(JdbcTemplate jdbcTemplate, long claimedVersion, String claimedBy, long leaseMillis) throws SQLException {
+        jdbcTemplate.execute("INSERT INTO " + lockTable + " (lock_name, version, owner, expires_at)"
+                + " SETTINGS insert_deduplicate = 1, insert_deduplication_token = " + literal(lockName + "#" + claimedVersion)
+                + (database.isClustered() ? ", insert_quorum = 'auto'" : "")
+                + " VALUES (" + literal(lockName) + ", " + claimedVersion + ", " + literal(claimedBy)
+                + ", now64(3) + toIntervalMillisecond(" + leaseMillis + "))");
+    }
+
+    private LockState readState(JdbcTemplate jdbcTemplate) throws SQLException {
+        List<LockState> states = jdbcTemplate.query("SELECT version, owner, expires_at <= now64(3) AS expired FROM " + lockTable
+                        + " WHERE lock_name = " + literal(lockName) + " ORDER BY version DESC LIMIT 1"
+                        + (database.isClustered() ? " SETTINGS select_sequential_consistency = 1" : ""),
+                rs -> new LockState(rs.getLong("version"), rs.getString("owner"), rs.getBoolean("expired")));
+        return states.isEmpty() ? new LockState(0, RELEASED, true) : states.get(0);
+    }
+
+    private static String literal(String value) {
+        return "'" + value.replace("\\", "\\\\").replace("'", "\\'") + "'";
+    }
+
+    private static class LockState {
+        private final long version;
+        private final String owner;
+        private final boolean expired;
+
+        LockState(long version, String owner, boolean expired) {
+            this.version = version;
+            this.owner = owner;
+            this.expired = expired;
+        }
+
+        boolean isFree() {
+            return RELEASED.equals(owner) || expired;
+        }
+    }
+
+    /**
+     * Renews the lease from a daemon thread with its own connection, every third of the lease.
+     */
+    private class Heartbeat implements AutoCloseable {
+        private final ScheduledExecutorService scheduler;
+        private ClickHouseConnection connection;
+
+        Heartbeat() {
+            long interval = Math.max(1, database.getLockLeaseMillis() / 3);
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "flyway-clickhouse-lock-heartbeat");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::beat, interval, interval, TimeUnit.MILLISECONDS);
+        }
+
+        private void beat() {
+            if (leaseLost) {
+                return;
+            }
+            try {
+                if (connection == null) {
+                    connection = database.openSystemConnection();
+                }
+                renew(connection.getJdbcTemplate());
+            } catch (SQLException | RuntimeException e) {
+                // Retried on the next beat, the lease survives a couple of missed renewals
+                LOG.debug(Thread.currentThread().getName() + "> Unable to renew lease on " + lockName + ": " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void close() {
+            scheduler.shutdownNow();
+            try {
+                scheduler.awaitTermination(database.getLockLeaseMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (connection != null) {
+                connection.close();
+            }
+        }
+    }
+}
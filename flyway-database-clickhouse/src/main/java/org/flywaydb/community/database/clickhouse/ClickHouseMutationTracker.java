@@ -0,0 +1,229 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-clickhouse
+ * ========================================================================
+ * Copyright (C) 2010 - 2025 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+
+package org.flywaydb.community.database.clickhouse;
+
+import lombok.CustomLog;
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.api.configuration.Configuration;
+import org.flywaydb.core.internal.jdbc.JdbcTemplate;
+import org.flywaydb.core.internal.jdbc.Results;
+import org.flywaydb.core.internal.sqlscript.SqlScriptExecutor;
+import org.flywaydb.core.internal.sqlscript.SqlStatement;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Waits for the mutations started by an {@code ALTER TABLE ... UPDATE/DELETE/MATERIALIZE/CLEAR} statement, by
+ * polling {@code system.mutations} until no part is left to mutate. The mutations of the statement are those of the
+ * table that did not exist before it was sent. Progress is logged while waiting, and a
+ * mutation reporting a {@code latest_fail_reason} fails the migration right away instead of being retried until
+ * the deadline.
+ */
+@CustomLog
+class ClickHouseMutationTracker {
+
+    private static final Pattern MUTATION = Pattern.compile("^(\\s*(--[^\\n]*\\n|/\\*.*?\\*/))*\\s*ALTER\\s+TABLE\\s+" +
+                    "(?:(`[^`]+`|\\w+)\\.)?(`[^`]+`|\\w+)\\s+(?:ON\\s+CLUSTER\\s+(?:`[^`]+`|'[^']+'|\\S+)\\s+)?" +
+                    "(UPDATE|DELETE|MATERIALIZE|CLEAR)\\b",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final long POLL_INTERVAL_MILLIS = 1000;
+    private static final long REPORT_INTERVAL_MILLIS = 10000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String database;
+    private final String table;
+    private final long timeoutMillis;
+
+    private ClickHouseMutationTracker(JdbcTemplate jdbcTemplate, String database, String table, long timeoutMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.database = database;
+        this.table = table;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * @return A tracker for the mutation started by this statement, or {@code null} if it does not start one.
+     */
+    static ClickHouseMutationTracker of(JdbcTemplate jdbcTemplate, SqlStatement sqlStatement, long timeoutMillis) {
+        Matcher matcher = MUTATION.matcher(sqlStatement.getSql());
+        if (!matcher.find()) {
+            return null;
+        }
+        return new ClickHouseMutationTracker(jdbcTemplate, unquote(matcher.group(3)), unquote(matcher.group(4)), timeoutMillis);
+    }
+
+    private static String unquote(String name) {
+        return name != null && name.startsWith("`") ? name.substring(1, name.length() - 1) : name;
+    }
+
+    /**
+     * @return The statement, executed so that it only completes once the mutations it started are done. A mutation
+     * that fails or does not finish in time is reported as the failure of the statement.
+     */
+    SqlStatement track(SqlStatement sqlStatement) {
+        return new TrackedStatement(sqlStatement);
+    }
+
+    private Results execute(SqlStatement sqlStatement, SqlScriptExecutor sqlScriptExecutor, Configuration config) {
+        // Mutations of the table that already existed, so that only those started by the statement are waited for.
+        // Matching on create_time would also catch those other sessions started in the same second
+        Set<String> existing;
+        try {
+            existing = readMutationIds();
+        } catch (SQLException e) {
+            Results results = new Results();
+            results.setException(e);
+            return results;
+        }
+        Results results = sqlStatement.execute(jdbcTemplate, sqlScriptExecutor, config);
+        if (results.getException() != null) {
+            return results;
+        }
+        try {
+            Set<String> started = readMutationIds();
+            started.removeAll(existing);
+            awaitCompletion(started);
+        } catch (SQLException e) {
+            results.setException(e);
+        } catch (FlywayException e) {
+            // Reported like any other failure of the statement
+            results.setException(new SQLException(e.getMessage(), e));
+        }
+        return results;
+    }
+
+    private Set<String> readMutationIds() throws SQLException {
+        return new HashSet<>(jdbcTemplate.queryForStringList("SELECT mutation_id FROM system.mutations" +
+                        " WHERE database = " + (database == null ? "currentDatabase()" : "?") + " AND table = ?",
+                database == null ? new String[]{table} : new String[]{database, table}));
+    }
+
+    private void awaitCompletion(Set<String> ids) throws SQLException {
+        String qualifiedTable = (database == null ? "" : database + ".") + table;
+        if (ids.isEmpty()) {
+            LOG.debug("No mutation started on " + qualifiedTable);
+            return;
+        }
+        long start = System.nanoTime();
+        long lastReport = start;
+        while (true) {
+            List<Mutation> mutations = jdbcTemplate.query("SELECT mutation_id, parts_to_do, is_done, latest_fail_reason FROM system.mutations" +
+                            " WHERE database = " + (database == null ? "currentDatabase()" : "?") + " AND table = ? AND NOT is_killed",
+                    rs -> new Mutation(rs.getString(1), rs.getLong(2), rs.getInt(3) != 0, rs.getString(4)),
+                    database == null ? new Object[]{table} : new Object[]{database, table});
+
+            long partsToDo = 0;
+            List<String> pending = new ArrayList<>();
+            for (Mutation mutation : mutations) {
+                if (mutation.done || !ids.contains(mutation.id)) {
+                    continue;
+                }
+                if (mutation.failReason != null && !mutation.failReason.isEmpty()) {
+                    throw new FlywayException("Mutation " + mutation.id + " on " + qualifiedTable + " failed: " + mutation.failReason
+                            + ". It keeps being retried in the background until killed with KILL MUTATION WHERE mutation_id = '" + mutation.id + "'");
+                }
+                partsToDo += mutation.partsToDo;
+                pending.add(mutation.id);
+            }
+            if (pending.isEmpty()) {
+                LOG.debug("Mutations on " + qualifiedTable + " finished in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " millis");
+                return;
+            }
+
+            long now = System.nanoTime();
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(now - start);
+            if (elapsedMillis >= timeoutMillis) {
+                throw new FlywayException("Mutations " + pending + " on " + qualifiedTable + " did not finish within " + timeoutMillis
+                        + " millis, " + partsToDo + " parts left to mutate");
+            }
+            if (TimeUnit.NANOSECONDS.toMillis(now - lastReport) >= REPORT_INTERVAL_MILLIS) {
+                LOG.info("Waiting for mutations " + pending + " on " + qualifiedTable + ": " + partsToDo + " parts left to mutate after "
+                        + TimeUnit.MILLISECONDS.toSeconds(elapsedMillis) + "s");
+                lastReport = now;
+            }
+            try {
+                Thread.sleep(Math.min(POLL_INTERVAL_MILLIS, timeoutMillis - elapsedMillis));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new FlywayException("Interrupted while waiting for mutations on " + qualifiedTable, e);
+            }
+        }
+    }
+
+    private class TrackedStatement implements SqlStatement {
+        private final SqlStatement delegate;
+
+        TrackedStatement(SqlStatement delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int getLineNumber() {
+            return delegate.getLineNumber();
+        }
+
+        @Override
+        public String getSql() {
+            return delegate.getSql();
+        }
+
+        @Override
+        public String getDelimiter() {
+            return delegate.getDelimiter();
+        }
+
+        @Override
+        public boolean canExecuteInTransaction() {
+            return delegate.canExecuteInTransaction();
+        }
+
+        @Override
+        public boolean isBatchable() {
+            return delegate.isBatchable();
+        }
+
+        @Override
+        public Results execute(JdbcTemplate jdbcTemplate, SqlScriptExecutor sqlScriptExecutor, Configuration config) {
+            return ClickHouseMutationTracker.this.execute(delegate, sqlScriptExecutor, config);
+        }
+    }
+
+    private static class Mutation {
+        private final String id;
+        private final long partsToDo;
+        private final boolean done;
+        private final String failReason;
+
+        private Mutation(String id, long partsToDo, boolean done, String failReason) {
+            this.id = id;
+            this.partsToDo = partsToDo;
+            this.done = done;
+            this.failReason = failReason;
+        }
+    }
+}
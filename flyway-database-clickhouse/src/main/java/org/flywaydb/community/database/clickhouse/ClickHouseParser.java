@@ -20,12 +20,145 @@
 
 package org.flywaydb.community.database.clickhouse;
 
+import org.flywaydb.core.api.FlywayException;
 import org.flywaydb.core.api.configuration.Configuration;
+import org.flywaydb.core.api.resource.LoadableResource;
+import org.flywaydb.core.api.resource.Resource;
 import org.flywaydb.core.internal.parser.Parser;
+import org.flywaydb.core.internal.parser.ParserContext;
 import org.flywaydb.core.internal.parser.ParsingContext;
+import org.flywaydb.core.internal.parser.PeekingReader;
+import org.flywaydb.core.internal.parser.PositionTracker;
+import org.flywaydb.core.internal.parser.Recorder;
+import org.flywaydb.core.internal.parser.StatementType;
+import org.flywaydb.core.internal.parser.Token;
+import org.flywaydb.core.internal.sqlscript.Delimiter;
+import org.flywaydb.core.internal.sqlscript.ParsedSqlStatement;
+import org.flywaydb.core.internal.sqlscript.SqlStatement;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class ClickHouseParser extends Parser {
+
+    private static final Pattern SETTINGS_DIRECTIVE = Pattern.compile("^--\\s*clickhouse:settings\\s+(.*)$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SETTING = Pattern.compile("^\\s*(\\w+)\\s*=\\s*(.+?)\\s*$", Pattern.DOTALL);
+
+    private Resource resource;
+    private SqlStatement pending;
+
     protected ClickHouseParser(Configuration configuration, ParsingContext parsingContext, int peekDepth) {
         super(configuration, parsingContext, peekDepth);
     }
+
+    @Override
+    protected SqlStatement getNextStatement(Resource resource, PeekingReader reader, Recorder recorder, PositionTracker tracker,
+                                            ParserContext context) {
+        this.resource = resource;
+        SqlStatement statement = pending != null ? pending : super.getNextStatement(resource, reader, recorder, tracker, context);
+        pending = null;
+
+        ClickHouseConfigurationExtension extension = configuration.getPluginRegister().getPlugin(ClickHouseConfigurationExtension.class);
+        if (extension.getInsertCoalesceMaxRows() <= 1) {
+            return statement;
+        }
+        ClickHouseCoalescedInsertStatement.Builder insert = ClickHouseCoalescedInsertStatement.Builder.start(statement, getDefaultDelimiter(),
+                extension.getInsertCoalesceMaxRows(), extension.getInsertCoalesceMaxBytes());
+        if (insert == null) {
+            return statement;
+        }
+        while (true) {
+            SqlStatement next = super.getNextStatement(resource, reader, recorder, tracker, context);
+            if (next == null || !insert.add(next)) {
+                // Returned by the next call
+                pending = next;
+                return insert.build();
+            }
+        }
+    }
+
+    @Override
+    protected ParsedSqlStatement createStatement(PeekingReader reader, Recorder recorder, int statementPos, int statementLine, int statementCol,
+                                                 int nonCommentPartPos, int nonCommentPartLine, int nonCommentPartCol, StatementType statementType,
+                                                 boolean canExecuteInTransaction, Delimiter delimiter, String sql, List<Token> tokens,
+                                                 boolean batchable) throws IOException {
+        ParsedSqlStatement backfill = ClickHouseBackfillParsedStatement.of(statementPos, statementLine, statementCol, sql,
+                delimiter, canExecuteInTransaction, resource);
+        if (backfill != null) {
+            return backfill;
+        }
+        ParsedSqlStatement infile = ClickHouseInfileParsedStatement.of(statementPos, statementLine, statementCol, sql,
+                delimiter, canExecuteInTransaction, resource);
+        if (infile != null) {
+            return infile;
+        }
+        return super.createStatement(reader, recorder, statementPos, statementLine, statementCol, nonCommentPartPos, nonCommentPartLine,
+                nonCommentPartCol, statementType, canExecuteInTransaction, delimiter, sql, tokens, batchable);
+    }
+
+    /**
+     * Reads the {@code -- clickhouse:settings name=value, ...} directives from the leading comments of a script.
+     *
+     * @return The settings in the order they were given, empty if there is no such directive.
+     */
+    static Map<String, String> getScriptSettings(LoadableResource resource) {
+        Map<String, String> settings = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(resource.read())) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (!line.startsWith("--")) {
+                    break;
+                }
+                Matcher directive = SETTINGS_DIRECTIVE.matcher(line);
+                if (!directive.matches()) {
+                    continue;
+                }
+                for (String setting : splitSettings(directive.group(1))) {
+                    Matcher matcher = SETTING.matcher(setting);
+                    if (!matcher.matches()) {
+                        throw new FlywayException("Invalid setting '" + setting.trim() + "' in the clickhouse:settings directive of "
+                                + resource.getFilename() + ". Expected name=value");
+                    }
+                    settings.put(matcher.group(1), matcher.group(2));
+                }
+            }
+        } catch (IOException e) {
+            throw new FlywayException("Unable to read " + resource.getFilename(), e);
+        }
+        return settings;
+    }
+
+    /**
+     * Splits on the commas that are not part of a quoted value.
+     */
+    static List<String> splitSettings(String settings) {
+        List<String> result = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (char c : settings.toCharArray()) {
+            if (c == '\'') {
+                quoted = !quoted;
+            }
+            if (c == ',' && !quoted) {
+                result.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        if (current.toString().trim().length() > 0) {
+            result.add(current.toString());
+        }
+        return result;
+    }
 }
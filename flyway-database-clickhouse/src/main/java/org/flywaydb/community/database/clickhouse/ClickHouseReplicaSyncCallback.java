@@ -0,0 +1,220 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-clickhouse
+ * ========================================================================
+ * Copyright (C) 2010 - 2025 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+
+package org.flywaydb.community.database.clickhouse;
+
+import lombok.CustomLog;
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.api.callback.Callback;
+import org.flywaydb.core.api.callback.Context;
+import org.flywaydb.core.api.callback.Event;
+import org.flywaydb.core.api.configuration.Configuration;
+import org.flywaydb.core.internal.util.StringUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Waits after migrate until the replicas of every replicated table written by the migrations have caught up, so
+ * that readers of any replica see the new schema and data. Register it with
+ * {@code flyway.callbacks=org.flywaydb.community.database.clickhouse.ClickHouseReplicaSyncCallback}.
+ * <p>
+ * The tables are taken from the statements of SQL migrations. Each one gets a {@code SYSTEM SYNC REPLICA}, ON
+ * CLUSTER when a cluster is configured, on a connection of its own, and is then polled until
+ * {@code system.replicas.absolute_delay} is zero on all replicas.
+ */
+@CustomLog
+public class ClickHouseReplicaSyncCallback implements Callback {
+
+    private static final Pattern TOUCHED_TABLE = Pattern.compile("^(\\s*(--[^\\n]*\\n|/\\*.*?\\*/))*\\s*" +
+                    "(?:INSERT\\s+INTO(?:\\s+TABLE)?|ALTER\\s+TABLE|CREATE\\s+(?:OR\\s+REPLACE\\s+)?TABLE(?:\\s+IF\\s+NOT\\s+EXISTS)?" +
+                    "|TRUNCATE(?:\\s+TABLE)?(?:\\s+IF\\s+EXISTS)?|OPTIMIZE\\s+TABLE|EXCHANGE\\s+TABLES|RENAME\\s+TABLE)\\s+" +
+                    "(?:(`[^`]+`|\\w+)\\.)?(`[^`]+`|\\w+)",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final long POLL_INTERVAL_MILLIS = 500;
+
+    private final Set<String> touchedTables = new LinkedHashSet<>();
+
+    @Override
+    public boolean supports(Event event, Context context) {
+        return event == Event.BEFORE_MIGRATE || event == Event.AFTER_EACH_MIGRATE_STATEMENT || event == Event.AFTER_MIGRATE;
+    }
+
+    @Override
+    public boolean canHandleInTransaction(Event event, Context context) {
+        return true;
+    }
+
+    @Override
+    public void handle(Event event, Context context) {
+        if (event == Event.BEFORE_MIGRATE) {
+            touchedTables.clear();
+        } else if (event == Event.AFTER_EACH_MIGRATE_STATEMENT) {
+            if (context.getStatement() != null) {
+                track(context.getStatement().getSql());
+            }
+        } else if (!touchedTables.isEmpty()) {
+            try {
+                sync(context);
+            } finally {
+                touchedTables.clear();
+            }
+        }
+    }
+
+    @Override
+    public String getCallbackName() {
+        return this.getClass().getSimpleName();
+    }
+
+    private void track(String sql) {
+        Matcher matcher = TOUCHED_TABLE.matcher(sql);
+        if (matcher.find()) {
+            // Unqualified tables are resolved against the current database once migrate is done
+            touchedTables.add((matcher.group(3) == null ? "" : unquote(matcher.group(3))) + "." + unquote(matcher.group(4)));
+        }
+    }
+
+    private static String unquote(String name) {
+        return name.startsWith("`") ? name.substring(1, name.length() - 1) : name;
+    }
+
+    private void sync(Context context) {
+        Configuration configuration = context.getConfiguration();
+        ClickHouseConfigurationExtension extension = configuration.getPluginRegister().getPlugin(ClickHouseConfigurationExtension.class);
+        List<String[]> tables = getReplicatedTables(context.getConnection());
+        if (tables.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(tables.size(), Math.max(1, extension.getReplicaSyncParallelism())), runnable -> {
+            Thread thread = new Thread(runnable, "flyway-clickhouse-replica-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (String[] table : tables) {
+                futures.add(executor.submit(() -> {
+                    syncTable(configuration, extension, table[0], table[1]);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FlywayException("Interrupted while synchronizing ClickHouse replicas", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof FlywayException) {
+                throw (FlywayException) e.getCause();
+            }
+            throw new FlywayException("Unable to synchronize ClickHouse replicas", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        LOG.info("Synchronized replicas of " + tables.size() + " tables in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+
+    /**
+     * @return The touched tables that are replicated, as database and table name.
+     */
+    private List<String[]> getReplicatedTables(Connection connection) {
+        List<String[]> tables = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet currentDatabase = statement.executeQuery("SELECT currentDatabase()")) {
+            currentDatabase.next();
+            String database = currentDatabase.getString(1);
+            try (PreparedStatement replicated = connection.prepareStatement("SELECT count() FROM system.replicas WHERE database = ? AND table = ?")) {
+                for (String touchedTable : touchedTables) {
+                    int dot = touchedTable.indexOf('.');
+                    String[] table = {dot == 0 ? database : touchedTable.substring(0, dot), touchedTable.substring(dot + 1)};
+                    replicated.setString(1, table[0]);
+                    replicated.setString(2, table[1]);
+                    try (ResultSet rs = replicated.executeQuery()) {
+                        if (rs.next() && rs.getLong(1) > 0) {
+                            tables.add(table);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new FlywayException("Unable to read system.replicas", e);
+        }
+        return tables;
+    }
+
+    private static void syncTable(Configuration configuration, ClickHouseConfigurationExtension extension, String database, String table) {
+        String clusterName = extension.getClusterName();
+        boolean isClustered = StringUtils.hasText(clusterName);
+        String qualifiedTable = "`" + database + "`.`" + table + "`";
+        long timeoutMillis = extension.getReplicaSyncTimeoutMs();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+        try (Connection connection = configuration.getDataSource().getConnection()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout((int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(timeoutMillis)));
+                statement.execute("SYSTEM SYNC REPLICA " + (isClustered ? "ON CLUSTER " + clusterName + " " : "") + qualifiedTable);
+            }
+
+            String delay = "SELECT max(absolute_delay) FROM " + (isClustered ? "clusterAllReplicas('" + clusterName + "', system.replicas)" : "system.replicas")
+                    + " WHERE database = ? AND table = ?";
+            try (PreparedStatement statement = connection.prepareStatement(delay)) {
+                statement.setString(1, database);
+                statement.setString(2, table);
+                while (true) {
+                    long absoluteDelay;
+                    try (ResultSet rs = statement.executeQuery()) {
+                        absoluteDelay = rs.next() ? rs.getLong(1) : 0;
+                    }
+                    if (absoluteDelay == 0) {
+                        LOG.debug("Replicas of " + qualifiedTable + " are in sync");
+                        return;
+                    }
+                    if (System.nanoTime() >= deadline) {
+                        throw new FlywayException("Replicas of " + qualifiedTable + " are still " + absoluteDelay + "s behind after " + timeoutMillis + " ms");
+                    }
+                    Thread.sleep(POLL_INTERVAL_MILLIS);
+                }
+            }
+        } catch (SQLException e) {
+            throw new FlywayException("Unable to synchronize replicas of " + qualifiedTable + ": " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FlywayException("Interrupted while synchronizing replicas of " + qualifiedTable, e);
+        }
+    }
+}
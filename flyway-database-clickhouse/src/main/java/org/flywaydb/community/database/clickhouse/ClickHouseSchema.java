@@ -20,16 +20,28 @@
 
 package org.flywaydb.community.database.clickhouse;
 
+import lombok.CustomLog;
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.api.configuration.Configuration;
 import org.flywaydb.core.internal.database.base.Schema;
 import org.flywaydb.core.internal.jdbc.JdbcTemplate;
 import org.flywaydb.core.internal.util.StringUtils;
 
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+@CustomLog
 public class ClickHouseSchema extends Schema<ClickHouseDatabase, ClickHouseTable> {
 
     private static final String DEFAULT_SCHEMA = "default";
+    private static final Set<String> SERVER_DATABASES = new HashSet<>(Arrays.asList(DEFAULT_SCHEMA, "system", "information_schema", "INFORMATION_SCHEMA"));
+    private static final Pattern CREATE_DATABASE = Pattern.compile("^(\\s*CREATE\\s+DATABASE\\s+(?:`[^`]+`|\\S+))", Pattern.CASE_INSENSITIVE);
 
     /**
      * @param jdbcTemplate The Jdbc Template for communicating with the DB.
@@ -42,16 +54,14 @@ public class ClickHouseSchema extends Schema<ClickHouseDatabase, ClickHouseTable
 
     @Override
     protected boolean doExists() throws SQLException {
-        ClickHouseConnection systemConnection = database.getSystemConnection();
-        int i = systemConnection.getJdbcTemplate().queryForInt("SELECT COUNT() FROM system.databases WHERE name = ?", name);
-        return i > 0;
+        return database.getCatalogSnapshot().databaseExists(name);
     }
 
     @Override
     protected boolean doEmpty() throws SQLException {
-        ClickHouseConnection systemConnection = database.getSystemConnection();
-        int i = systemConnection.getJdbcTemplate().queryForInt("SELECT COUNT() FROM system.tables WHERE database = ?", name);
-        return i == 0;
+        // The lock table is created on first lock, possibly before the schema history table
+        return database.getCatalogSnapshot().getTables(name).stream()
+                .allMatch(ClickHouseLockTemplate.LOCK_TABLE_NAME::equals);
     }
 
     @Override
@@ -60,6 +70,7 @@ public class ClickHouseSchema extends Schema<ClickHouseDatabase, ClickHouseTable
         String clusterName = database.getClusterName();
         boolean isClustered = StringUtils.hasText(clusterName);
         systemConnection.getJdbcTemplate().executeStatement("CREATE DATABASE " + database.quote(name) + (isClustered ? (" ON CLUSTER " + clusterName) : ""));
+        ClickHouseCatalogSnapshot.invalidate();
     }
 
     @Override
@@ -70,19 +81,73 @@ public class ClickHouseSchema extends Schema<ClickHouseDatabase, ClickHouseTable
         String clusterName = database.getClusterName();
         boolean isClustered = StringUtils.hasText(clusterName);
         jdbcTemplate.executeStatement("DROP DATABASE " + database.quote(name) + (isClustered ? (" ON CLUSTER " + clusterName) : ""));
+        ClickHouseCatalogSnapshot.invalidate();
     }
 
     @Override
     protected void doClean() throws SQLException {
-        for (ClickHouseTable table : allTables()) {
-            table.drop();
+        if (database.getCleanMode() == ClickHouseCleanMode.DROP_DATABASE && !SERVER_DATABASES.contains(name)) {
+            if (isCreatedByFlyway()) {
+                recreate();
+                return;
+            }
+            LOG.info("Database " + name + " was not created by Flyway. Cleaning it table by table instead of dropping it");
+        }
+        new ClickHouseSchemaCleaner(jdbcTemplate, database, this).clean();
+    }
+
+    /**
+     * @return Whether this database is listed by the schema creation marker of the schema history table.
+     */
+    private boolean isCreatedByFlyway() throws SQLException {
+        Configuration configuration = database.getConfiguration();
+        String historySchema = configuration.getDefaultSchema() != null ? configuration.getDefaultSchema()
+                : configuration.getSchemas().length > 0 ? configuration.getSchemas()[0]
+                : database.getMainConnection().getCurrentSchemaNameOrSearchPath();
+        if (historySchema == null || !database.getCatalogSnapshot().getTables(historySchema).contains(configuration.getTable())) {
+            return false;
+        }
+        boolean replacing = database.isReplacingHistoryTable(historySchema, configuration.getTable());
+        List<String> markers = database.getSystemConnection().getJdbcTemplate().queryForStringList("SELECT script FROM "
+                + database.quote(historySchema, configuration.getTable()) + (replacing ? " FINAL" : "")
+                + " WHERE type = 'SCHEMA'" + (replacing ? " AND is_deleted = 0" : ""));
+        for (String marker : markers) {
+            for (String schema : marker.split(",")) {
+                if (name.equals(schema.trim().replace("`", "").replace("\"", ""))) {
+                    return true;
+                }
+            }
         }
+        return false;
+    }
+
+    /**
+     * Empties the database with a single drop and create, instead of one drop per table.
+     */
+    private void recreate() throws SQLException {
+        JdbcTemplate systemJdbcTemplate = database.getSystemConnection().getJdbcTemplate();
+        String createStatement = systemJdbcTemplate.queryForString("SHOW CREATE DATABASE " + database.quote(name));
+        String onCluster = database.isClustered() && database.isCleanOnCluster() ? " ON CLUSTER " + database.getClusterName() : "";
+        if (!onCluster.isEmpty()) {
+            Matcher matcher = CREATE_DATABASE.matcher(createStatement);
+            if (!matcher.find()) {
+                throw new FlywayException("Unable to recreate database " + name + " on cluster from: " + createStatement);
+            }
+            createStatement = matcher.group(1) + onCluster + createStatement.substring(matcher.end());
+        }
+
+        try {
+            systemJdbcTemplate.execute("DROP DATABASE " + database.quote(name) + onCluster + " SYNC");
+        } finally {
+            ClickHouseCatalogSnapshot.invalidate();
+            database.lockTablesDropped();
+        }
+        systemJdbcTemplate.execute(createStatement);
     }
 
     @Override
     protected ClickHouseTable[] doAllTables() throws SQLException {
-        ClickHouseConnection systemConnection = database.getSystemConnection();
-        return systemConnection.getJdbcTemplate().queryForStringList("SELECT name FROM system.tables WHERE database = ?", name)
+        return database.getCatalogSnapshot().getTables(name)
                 .stream()
                 .map(this::getTable)
                 .toArray(ClickHouseTable[]::new);
@@ -0,0 +1,222 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-clickhouse
+ * ========================================================================
+ * Copyright (C) 2010 - 2025 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+
+package org.flywaydb.community.database.clickhouse;
+
+import lombok.CustomLog;
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.internal.exception.FlywaySqlException;
+import org.flywaydb.core.internal.jdbc.JdbcTemplate;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Drops all tables of a schema in dependency order: a materialized view or view before the tables it reads from
+ * ({@code dependencies_table} in system.tables) and a materialized view before the table it writes to. Tables
+ * which do not depend on each other are dropped in parallel, on up to {@code flyway.clickhouse.cleanParallelism}
+ * connections.
+ */
+@CustomLog
+class ClickHouseSchemaCleaner {
+
+    private static final String NAME = "(`(?:[^`]|``)*`|[\\w$]+)";
+    private static final Pattern MATERIALIZED_VIEW_TARGET = Pattern.compile(
+            "^CREATE MATERIALIZED VIEW\\s+(?:" + NAME + "\\.)?" + NAME + "\\s+TO\\s+(?:" + NAME + "\\.)?" + NAME,
+            Pattern.CASE_INSENSITIVE);
+    private static final String INNER_TABLE_PREFIX = ".inner";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ClickHouseDatabase database;
+    private final ClickHouseSchema schema;
+
+    ClickHouseSchemaCleaner(JdbcTemplate jdbcTemplate, ClickHouseDatabase database, ClickHouseSchema schema) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.database = database;
+        this.schema = schema;
+    }
+
+    void clean() throws SQLException {
+        List<List<String>> levels = orderDrops(readDropBefore());
+        int parallelism = database.getCleanParallelism();
+        if (parallelism <= 1) {
+            for (List<String> level : levels) {
+                for (String table : level) {
+                    drop(jdbcTemplate, table);
+                }
+            }
+        } else {
+            dropInParallel(levels, parallelism);
+        }
+        // Inner tables of materialized views are dropped along with them, only orphans are left at this point
+        for (String table : database.getSystemConnection().getJdbcTemplate().queryForStringList(
+                "SELECT name FROM system.tables WHERE database = ? AND startsWith(name, '" + INNER_TABLE_PREFIX + "')", schema.getName())) {
+            drop(jdbcTemplate, table);
+        }
+        ClickHouseCatalogSnapshot.invalidate();
+    }
+
+    /**
+     * @return For each table, the tables of the same schema which must be dropped before it.
+     */
+    private Map<String, Set<String>> readDropBefore() throws SQLException {
+        Map<String, Set<String>> dropBefore = new LinkedHashMap<>();
+        Map<String, String> targets = new HashMap<>();
+        database.getSystemConnection().getJdbcTemplate().query(
+                "SELECT name, engine, create_table_query, dependent FROM system.tables " +
+                        "LEFT ARRAY JOIN arrayFilter((t, d) -> d = database, dependencies_table, dependencies_database) AS dependent " +
+                        "WHERE database = ? AND NOT startsWith(name, '" + INNER_TABLE_PREFIX + "')",
+                rs -> {
+                    String name = rs.getString("name");
+                    Set<String> prerequisites = dropBefore.computeIfAbsent(name, k -> new HashSet<>());
+                    String dependent = rs.getString("dependent");
+                    if (dependent != null && !dependent.isEmpty()) {
+                        prerequisites.add(dependent);
+                    }
+                    if ("MaterializedView".equals(rs.getString("engine"))) {
+                        String target = getMaterializedViewTarget(rs.getString("create_table_query"));
+                        if (target != null) {
+                            targets.put(name, target);
+                        }
+                    }
+                    return null;
+                }, schema.getName());
+        targets.forEach((view, target) -> {
+            if (dropBefore.containsKey(target)) {
+                dropBefore.get(target).add(view);
+            }
+        });
+        // Dependents that are no longer there, or live elsewhere, do not hold anything back
+        dropBefore.values().forEach(prerequisites -> prerequisites.retainAll(dropBefore.keySet()));
+        return dropBefore;
+    }
+
+    private String getMaterializedViewTarget(String createTableQuery) {
+        Matcher matcher = MATERIALIZED_VIEW_TARGET.matcher(createTableQuery);
+        if (!matcher.find()) {
+            return null;
+        }
+        String targetDatabase = matcher.group(3);
+        if (targetDatabase != null && !schema.getName().equals(unquote(targetDatabase))) {
+            return null;
+        }
+        return unquote(matcher.group(4));
+    }
+
+    private static String unquote(String name) {
+        return name.startsWith("`") ? name.substring(1, name.length() - 1).replace("``", "`") : name;
+    }
+
+    /**
+     * @return The tables grouped in levels, each only depending on tables of earlier levels.
+     */
+    private List<List<String>> orderDrops(Map<String, Set<String>> dropBefore) {
+        List<List<String>> levels = new ArrayList<>();
+        Set<String> dropped = new HashSet<>();
+        while (dropped.size() < dropBefore.size()) {
+            List<String> level = new ArrayList<>();
+            for (Map.Entry<String, Set<String>> entry : dropBefore.entrySet()) {
+                if (!dropped.contains(entry.getKey()) && dropped.containsAll(entry.getValue())) {
+                    level.add(entry.getKey());
+                }
+            }
+            if (level.isEmpty()) {
+                // A cycle, which ClickHouse should not allow. Drop the rest as before, one by one.
+                dropBefore.keySet().stream().filter(table -> !dropped.contains(table)).forEach(level::add);
+                LOG.warn("Circular dependencies between tables " + level + " of " + schema + ". Dropping them in any order");
+            }
+            dropped.addAll(level);
+            levels.add(level);
+        }
+        return levels;
+    }
+
+    private void dropInParallel(List<List<String>> levels, int parallelism) {
+        int size = Math.min(parallelism, levels.stream().mapToInt(List::size).max().orElse(1));
+        BlockingQueue<ClickHouseConnection> connections = new ArrayBlockingQueue<>(size);
+        ExecutorService executor = Executors.newFixedThreadPool(size, runnable -> {
+            Thread thread = new Thread(runnable, "flyway-clickhouse-clean");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (int i = 0; i < size; i++) {
+                connections.add(database.openSystemConnection());
+            }
+            for (List<String> level : levels) {
+                List<Future<?>> drops = new ArrayList<>();
+                for (String table : level) {
+                    drops.add(executor.submit(() -> {
+                        ClickHouseConnection connection = connections.take();
+                        try {
+                            drop(connection.getJdbcTemplate(), table);
+                        } finally {
+                            connections.put(connection);
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> drop : drops) {
+                    await(drop);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            connections.forEach(ClickHouseConnection::close);
+        }
+    }
+
+    private static void await(Future<?> drop) {
+        try {
+            drop.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FlywayException("Interrupted while cleaning", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new FlywayException(e.getCause());
+        }
+    }
+
+    private void drop(JdbcTemplate jdbcTemplate, String table) {
+        ClickHouseTable clickHouseTable = schema.getTable(table);
+        try {
+            jdbcTemplate.execute(clickHouseTable.getDropStatement());
+        } catch (SQLException e) {
+            throw new FlywaySqlException("Unable to drop " + clickHouseTable, e);
+        }
+    }
+}
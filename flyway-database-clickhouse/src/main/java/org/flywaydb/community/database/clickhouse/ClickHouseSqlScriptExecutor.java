@@ -0,0 +1,242 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-clickhouse
+ * ========================================================================
+ * Copyright (C) 2010 - 2025 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+
+package org.flywaydb.community.database.clickhouse;
+
+import lombok.CustomLog;
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.api.configuration.Configuration;
+import org.flywaydb.core.internal.callback.CallbackExecutor;
+import org.flywaydb.core.internal.exception.FlywaySqlException;
+import org.flywaydb.core.internal.jdbc.JdbcConnectionFactory;
+import org.flywaydb.core.internal.jdbc.JdbcTemplate;
+import org.flywaydb.core.internal.jdbc.Results;
+import org.flywaydb.core.internal.jdbc.StatementInterceptor;
+import org.flywaydb.core.internal.sqlscript.DefaultSqlScriptExecutor;
+import org.flywaydb.core.internal.sqlscript.ParsedSqlStatement;
+import org.flywaydb.core.internal.sqlscript.SqlScript;
+import org.flywaydb.core.internal.sqlscript.SqlStatement;
+import org.flywaydb.core.internal.util.StringUtils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+@CustomLog
+public class ClickHouseSqlScriptExecutor extends DefaultSqlScriptExecutor {
+
+    private static final Pattern CATALOG_DDL = Pattern.compile("^(\\s*(--[^\\n]*\\n|/\\*.*?\\*/))*\\s*(CREATE|DROP|UNDROP|RENAME|EXCHANGE|ATTACH|DETACH)\\b",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern NUMBER = Pattern.compile("-?\\d+(\\.\\d+)?");
+
+    private final JdbcConnectionFactory jdbcConnectionFactory;
+    private Map<String, String> scriptSettings = Collections.emptyMap();
+
+    public ClickHouseSqlScriptExecutor(JdbcTemplate jdbcTemplate, JdbcConnectionFactory jdbcConnectionFactory, CallbackExecutor callbackExecutor,
+                                       boolean undo, boolean batch, boolean outputQueryResults, StatementInterceptor statementInterceptor) {
+        super(jdbcTemplate, callbackExecutor, undo, batch, outputQueryResults, statementInterceptor);
+        this.jdbcConnectionFactory = jdbcConnectionFactory;
+    }
+
+    @Override
+    public List<Results> execute(SqlScript sqlScript, Configuration config) {
+        Map<String, String> settings = sqlScript.getResource() == null
+                ? Collections.emptyMap()
+                : ClickHouseParser.getScriptSettings(sqlScript.getResource());
+        if (settings.isEmpty()) {
+            return super.execute(sqlScript, config);
+        }
+
+        Map<String, String> previousSettings = applySettings(settings, sqlScript);
+        scriptSettings = settings;
+        List<Results> results;
+        try {
+            results = super.execute(sqlScript, config);
+        } catch (RuntimeException e) {
+            try {
+                restoreSettings(previousSettings, sqlScript);
+            } catch (RuntimeException restoreFailure) {
+                e.addSuppressed(restoreFailure);
+            }
+            throw e;
+        } finally {
+            scriptSettings = Collections.emptyMap();
+        }
+        restoreSettings(previousSettings, sqlScript);
+        return results;
+    }
+
+    /**
+     * @return The literal setting a setting back to its value, DEFAULT if it was not changed on the session. Only
+     * numbers are restored unquoted, as enum-like settings such as {@code load_balancing = 'random'} must be quoted too.
+     */
+    static String restoreValue(boolean changed, String type, String value) {
+        if (!changed) {
+            return "DEFAULT";
+        }
+        if (!"String".equals(type) && NUMBER.matcher(value).matches()) {
+            return value;
+        }
+        return "'" + value.replace("\\", "\\\\").replace("'", "\\'") + "'";
+    }
+
+    /**
+     * Sets the settings of a script on the session.
+     *
+     * @return The statements restoring them: their value if they were changed on the session, DEFAULT otherwise.
+     */
+    private Map<String, String> applySettings(Map<String, String> settings, SqlScript sqlScript) {
+        Map<String, String> previousSettings = new LinkedHashMap<>();
+        try {
+            for (String name : settings.keySet()) {
+                List<String> previous = jdbcTemplate.query("SELECT changed, type, value FROM system.settings WHERE name = ?",
+                        rs -> restoreValue(rs.getInt("changed") != 0, rs.getString("type"), rs.getString("value")),
+                        name);
+                if (previous.isEmpty()) {
+                    throw new FlywayException("Unknown setting " + name + " in the clickhouse:settings directive of "
+                            + sqlScript.getResource().getFilename());
+                }
+                previousSettings.put(name, previous.get(0));
+            }
+        } catch (SQLException e) {
+            throw new FlywaySqlException("Unable to apply the clickhouse:settings directive of " + sqlScript.getResource().getFilename(), e);
+        }
+        Map<String, String> applied = new LinkedHashMap<>();
+        for (Map.Entry<String, String> setting : settings.entrySet()) {
+            LOG.debug("Setting " + setting.getKey() + " = " + setting.getValue() + " for " + sqlScript.getResource().getFilename());
+            try {
+                jdbcTemplate.execute("SET " + setting.getKey() + " = " + setting.getValue());
+            } catch (SQLException e) {
+                FlywaySqlException failure = new FlywaySqlException("Unable to apply the clickhouse:settings directive of "
+                        + sqlScript.getResource().getFilename(), e);
+                try {
+                    restoreSettings(applied, sqlScript);
+                } catch (RuntimeException restoreFailure) {
+                    failure.addSuppressed(restoreFailure);
+                }
+                throw failure;
+            }
+            applied.put(setting.getKey(), previousSettings.get(setting.getKey()));
+        }
+        return previousSettings;
+    }
+
+    /**
+     * Fails rather than leaving a setting of this script on the session for the migrations that follow.
+     */
+    private void restoreSettings(Map<String, String> previousSettings, SqlScript sqlScript) {
+        for (Map.Entry<String, String> setting : previousSettings.entrySet()) {
+            try {
+                jdbcTemplate.execute("SET " + setting.getKey() + " = " + setting.getValue());
+            } catch (SQLException e) {
+                throw new FlywaySqlException("Unable to restore " + setting.getKey() + " to " + setting.getValue()
+                        + " after " + sqlScript.getResource().getFilename(), e);
+            }
+        }
+    }
+
+    /**
+     * Opens a connection next to the one of the script, for statements spreading their work over several connections.
+     * It comes from the connection factory of Flyway, so it runs the configured init SQL, and it has the settings of the
+     * {@code clickhouse:settings} directive of the script being executed. The caller is responsible for closing it.
+     */
+    Connection openSideConnection(String database) throws SQLException {
+        Connection connection = jdbcConnectionFactory.openConnection();
+        try {
+            // Same current database as the script, for unqualified table names. See ClickHouseConnection for the database term
+            if ("database".equals(connection.getMetaData().getCatalogTerm())) {
+                connection.setCatalog(database);
+            } else {
+                connection.setSchema(database);
+            }
+            try (Statement statement = connection.createStatement()) {
+                for (Map.Entry<String, String> setting : scriptSettings.entrySet()) {
+                    statement.execute("SET " + setting.getKey() + " = " + setting.getValue());
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            try {
+                connection.close();
+            } catch (SQLException closeFailure) {
+                e.addSuppressed(closeFailure);
+            }
+            throw e;
+        }
+        return connection;
+    }
+
+    @Override
+    protected Results executeStatement(JdbcTemplate jdbcTemplate, SqlScript sqlScript, SqlStatement sqlStatement, Configuration config) {
+        ClickHouseLockTemplate.checkHeldLease();
+        ClickHouseDistributedDdlTracker distributedDdl = trackDistributedDdl(jdbcTemplate, sqlStatement, config);
+        ClickHouseMutationTracker mutation = trackMutation(jdbcTemplate, sqlStatement, config);
+        try {
+            // Tracked while it executes, so that an entry which timed out on the initiator or an unfinished mutation is
+            // waited for before the callbacks, and a failure of either is reported like a failure of the statement
+            SqlStatement trackedStatement = distributedDdl == null ? sqlStatement : distributedDdl.track(sqlStatement);
+            trackedStatement = mutation == null ? trackedStatement : mutation.track(trackedStatement);
+            return super.executeStatement(jdbcTemplate, sqlScript, trackedStatement, config);
+        } finally {
+            // Also after a failure, as a DDL statement running ON CLUSTER may have been applied on some replicas
+            if (isCatalogDdl(sqlStatement)) {
+                ClickHouseCatalogSnapshot.invalidate();
+            }
+        }
+    }
+
+    @Override
+    protected void handleException(Results results, SqlScript sqlScript, SqlStatement sqlStatement, Configuration config) {
+        if (sqlStatement instanceof ClickHouseCoalescedInsertStatement) {
+            ParsedSqlStatement failedStatement = ((ClickHouseCoalescedInsertStatement) sqlStatement).getFailedStatement();
+            if (failedStatement != null) {
+                // Report the line of the original statement rather than that of the merged insert
+                super.handleException(results, sqlScript, failedStatement, config);
+                return;
+            }
+        }
+        super.handleException(results, sqlScript, sqlStatement, config);
+    }
+
+    private static ClickHouseDistributedDdlTracker trackDistributedDdl(JdbcTemplate jdbcTemplate, SqlStatement sqlStatement, Configuration config) {
+        ClickHouseConfigurationExtension extension = config.getPluginRegister().getPlugin(ClickHouseConfigurationExtension.class);
+        if (!StringUtils.hasText(extension.getClusterName()) || extension.getDistributedDdlTimeoutMs() == 0
+                || !ClickHouseDistributedDdlTracker.isOnCluster(sqlStatement)) {
+            return null;
+        }
+        return new ClickHouseDistributedDdlTracker(jdbcTemplate, extension.getClusterName(), extension.getDistributedDdlTimeoutMs());
+    }
+
+    private static ClickHouseMutationTracker trackMutation(JdbcTemplate jdbcTemplate, SqlStatement sqlStatement, Configuration config) {
+        long timeoutMillis = config.getPluginRegister().getPlugin(ClickHouseConfigurationExtension.class).getMutationTimeoutMs();
+        if (timeoutMillis == 0) {
+            return null;
+        }
+        return ClickHouseMutationTracker.of(jdbcTemplate, sqlStatement, timeoutMillis);
+    }
+
+    static boolean isCatalogDdl(SqlStatement sqlStatement) {
+        return CATALOG_DDL.matcher(sqlStatement.getSql()).find();
+    }
+}
@@ -41,16 +41,20 @@ public class ClickHouseTable extends Table<ClickHouseDatabase, ClickHouseSchema>
 
     @Override
     protected void doDrop() throws SQLException {
+        jdbcTemplate.executeStatement(getDropStatement());
+        ClickHouseCatalogSnapshot.invalidate();
+    }
+
+    String getDropStatement() {
         String clusterName = database.getClusterName();
+        boolean onCluster = StringUtils.hasText(clusterName) && database.isCleanOnCluster();
 
-        jdbcTemplate.executeStatement("DROP TABLE " + this + (StringUtils.hasText(clusterName) ? (" ON CLUSTER " + clusterName) : ""));
+        return "DROP TABLE " + this + (onCluster ? (" ON CLUSTER " + clusterName) : "") + (database.isCleanSync() ? " SYNC" : "");
     }
 
     @Override
     protected boolean doExists() throws SQLException {
-        ClickHouseConnection systemConnection = database.getSystemConnection();
-        int count = systemConnection.getJdbcTemplate().queryForInt("SELECT COUNT() FROM system.tables WHERE database = ? AND name = ?", schema.getName(), name);
-        return count > 0;
+        return database.getCatalogSnapshot().getTables(schema.getName()).contains(name);
     }
 
     @Override
@@ -0,0 +1,93 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-clickhouse
+ * ========================================================================
+ * Copyright (C) 2010 - 2025 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+
+package org.flywaydb.community.database.clickhouse;
+
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.internal.resource.StringResource;
+import org.flywaydb.core.internal.sqlscript.Delimiter;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ClickHouseBackfillParsedStatementTest {
+
+    @Test
+    void reads_the_source_and_parallelism() {
+        // when
+        ClickHouseBackfillParsedStatement statement = of("-- clickhouse:backfill source=analytics.events parallelism=8\n"
+                + "ALTER TABLE events UPDATE country = upper(country) IN PARTITION ID {partition_id} WHERE 1");
+
+        // then
+        assertThat(statement).isNotNull();
+        assertThat(statement.getSourceDatabase()).isEqualTo("analytics");
+        assertThat(statement.getSourceTable()).isEqualTo("events");
+        assertThat(statement.getParallelism()).isEqualTo(8);
+        assertThat(statement.isBatchable()).isFalse();
+    }
+
+    @Test
+    void defaults_to_the_current_database_and_unquotes_names() {
+        // when
+        ClickHouseBackfillParsedStatement statement = of("-- CLICKHOUSE:BACKFILL source=`events.v2`\n"
+                + "ALTER TABLE `events.v2` REPLACE PARTITION {partition} FROM staging");
+
+        // then
+        assertThat(statement).isNotNull();
+        assertThat(statement.getSourceDatabase()).isNull();
+        assertThat(statement.getSourceTable()).isEqualTo("events.v2");
+        assertThat(statement.getParallelism()).isEqualTo(4);
+    }
+
+    @Test
+    void ignores_statements_without_the_directive() {
+        assertThat(of("ALTER TABLE events UPDATE country = upper(country) WHERE 1")).isNull();
+        assertThat(of("-- clickhouse:settings mutations_sync=2\nALTER TABLE events DELETE WHERE 1")).isNull();
+    }
+
+    @Test
+    void rejects_invalid_directives() {
+        assertThatThrownBy(() -> of("-- clickhouse:backfill parallelism=2\nALTER TABLE t DELETE WHERE 1"))
+                .isInstanceOf(FlywayException.class)
+                .hasMessageContaining("source=[database.]table");
+        assertThatThrownBy(() -> of("-- clickhouse:backfill source=a.b.c\nALTER TABLE t DELETE WHERE 1"))
+                .isInstanceOf(FlywayException.class)
+                .hasMessageContaining("source=[database.]table");
+        assertThatThrownBy(() -> of("-- clickhouse:backfill source=t parallelism=many\nALTER TABLE t DELETE WHERE 1"))
+                .isInstanceOf(FlywayException.class)
+                .hasMessageContaining("Invalid parallelism");
+        assertThatThrownBy(() -> of("-- clickhouse:backfill source=t batch=10\nALTER TABLE t DELETE WHERE 1"))
+                .isInstanceOf(FlywayException.class)
+                .hasMessageContaining("Unknown option batch");
+    }
+
+    @Test
+    void rejects_inserts() {
+        assertThatThrownBy(() -> of("-- clickhouse:backfill source=events\n"
+                + "INSERT INTO events_v2 SELECT * FROM events WHERE _partition_id = {partition_id}"))
+                .isInstanceOf(FlywayException.class)
+                .hasMessageContaining("INSERT");
+    }
+
+    private static ClickHouseBackfillParsedStatement of(String sql) {
+        return ClickHouseBackfillParsedStatement.of(0, 1, 1, sql, Delimiter.SEMICOLON, true, new StringResource(sql));
+    }
+}
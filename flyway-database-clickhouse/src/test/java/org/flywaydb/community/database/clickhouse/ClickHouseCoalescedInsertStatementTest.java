@@ -0,0 +1,235 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-clickhouse
+ * ========================================================================
+ * Copyright (C) 2010 - 2025 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+
+package org.flywaydb.community.database.clickhouse;
+
+import org.flywaydb.community.database.clickhouse.ClickHouseCoalescedInsertStatement.Builder;
+import org.flywaydb.core.internal.jdbc.JdbcTemplate;
+import org.flywaydb.core.internal.jdbc.Results;
+import org.flywaydb.core.internal.sqlscript.Delimiter;
+import org.flywaydb.core.internal.sqlscript.ParsedSqlStatement;
+import org.flywaydb.core.internal.sqlscript.SqlStatement;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.Types;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClickHouseCoalescedInsertStatementTest {
+
+    @Test
+    void counts_top_level_tuples() {
+        assertThat(Builder.countTuples("(1)")).isEqualTo(1);
+        assertThat(Builder.countTuples("(1, 'a'), (2, 'b'),(3, 'c')")).isEqualTo(3);
+        assertThat(Builder.countTuples("(1, tuple(2, 3), [(4, 5)])")).isEqualTo(1);
+    }
+
+    @Test
+    void ignores_parentheses_in_quotes_when_counting_tuples() {
+        assertThat(Builder.countTuples("('(', ')'), (`a(b`, \"c)d\")")).isEqualTo(2);
+        assertThat(Builder.countTuples("('it\\'s (not) a tuple')")).isEqualTo(1);
+    }
+
+    @Test
+    void merges_inserts_into_the_same_table_and_columns() {
+        // given
+        Builder builder = Builder.start(statement(1, "INSERT INTO db.events (id, name) VALUES (1, 'a')"), Delimiter.SEMICOLON, 100, 1024);
+
+        // when
+        boolean second = builder.add(statement(2, "INSERT  INTO db.events (id,  name)\nVALUES (2, 'b'), (3, 'c')"));
+        SqlStatement merged = builder.build();
+
+        // then
+        assertThat(second).isTrue();
+        assertThat(merged).isInstanceOf(ClickHouseCoalescedInsertStatement.class);
+        assertThat(merged.getSql()).isEqualTo("INSERT INTO db.events (id, name) VALUES (1, 'a'),\n(2, 'b'), (3, 'c')");
+        assertThat(merged.getLineNumber()).isEqualTo(1);
+    }
+
+    @Test
+    void returns_a_single_statement_unchanged() {
+        // given
+        ParsedSqlStatement insert = statement(1, "INSERT INTO events VALUES (1)");
+
+        // when
+        SqlStatement built = Builder.start(insert, Delimiter.SEMICOLON, 100, 1024).build();
+
+        // then
+        assertThat(built).isSameAs(insert);
+    }
+
+    @Test
+    void does_not_merge_other_targets_or_columns() {
+        // given
+        Builder builder = Builder.start(statement(1, "INSERT INTO events (id) VALUES (1)"), Delimiter.SEMICOLON, 100, 1024);
+
+        // then
+        assertThat(builder.add(statement(2, "INSERT INTO events (name) VALUES ('a')"))).isFalse();
+        assertThat(builder.add(statement(3, "INSERT INTO other (id) VALUES (2)"))).isFalse();
+        assertThat(builder.add(statement(4, "INSERT INTO events (id) SELECT 2"))).isFalse();
+        assertThat(builder.add(null)).isFalse();
+    }
+
+    @Test
+    void stops_at_the_row_limit() {
+        // given
+        Builder builder = Builder.start(statement(1, "INSERT INTO events VALUES (1), (2)"), Delimiter.SEMICOLON, 3, 1024);
+
+        // then
+        assertThat(builder.add(statement(2, "INSERT INTO events VALUES (3)"))).isTrue();
+        assertThat(builder.add(statement(3, "INSERT INTO events VALUES (4)"))).isFalse();
+    }
+
+    @Test
+    void counts_the_byte_limit_in_utf8() {
+        // given
+        String prefix = "INSERT INTO events VALUES ";
+        // ('\u00e9\u00e9\u00e9') is 7 characters but 10 bytes in UTF-8, plus 2 for the separator
+        long limit = prefix.length() + "('a')".length() + 2 + 10;
+        Builder tooSmall = Builder.start(statement(1, prefix + "('a')"), Delimiter.SEMICOLON, 100, limit - 1);
+        Builder justRight = Builder.start(statement(1, prefix + "('a')"), Delimiter.SEMICOLON, 100, limit);
+
+        // then
+        assertThat(tooSmall.add(statement(2, prefix + "('\u00e9\u00e9\u00e9')"))).isFalse();
+        assertThat(justRight.add(statement(2, prefix + "('\u00e9\u00e9\u00e9')"))).isTrue();
+        assertThat(justRight.add(statement(3, prefix + "('a')"))).isFalse();
+    }
+
+    @Test
+    void does_not_match_inserts_that_are_not_plain_values() {
+        assertThat(Builder.start(statement(1, "INSERT INTO t SELECT * FROM values('x UInt8', (1))"), Delimiter.SEMICOLON, 100, 1024)).isNull();
+        assertThat(Builder.start(statement(1, "INSERT INTO FUNCTION remote('host', db.t) VALUES (1)"), Delimiter.SEMICOLON, 100, 1024)).isNull();
+        assertThat(Builder.start(statement(1, "INSERT INTO t (a) SETTINGS async_insert = 1 VALUES (1)"), Delimiter.SEMICOLON, 100, 1024)).isNull();
+        assertThat(Builder.start(statement(1, "INSERT INTO t FORMAT Values (1)"), Delimiter.SEMICOLON, 100, 1024)).isNull();
+        assertThat(Builder.start(statement(1, "-- seed\nINSERT INTO t VALUES (1)"), Delimiter.SEMICOLON, 100, 1024)).isNull();
+    }
+
+    @Test
+    void does_not_match_subclasses_of_parsed_statements() {
+        // given
+        SqlStatement infile = ClickHouseInfileParsedStatement.of(0, 1, 1, "INSERT INTO t FROM INFILE 'data.csv' FORMAT CSV",
+                Delimiter.SEMICOLON, true, null);
+
+        // then
+        assertThat(Builder.start(infile, Delimiter.SEMICOLON, 100, 1024)).isNull();
+    }
+
+    @Test
+    void matches_quoted_identifiers() {
+        // given
+        Builder builder = Builder.start(statement(1, "INSERT INTO `my db`.\"my table\" (`a b`, c) VALUES (1, 2)"), Delimiter.SEMICOLON, 100, 1024);
+
+        // then
+        assertThat(builder).isNotNull();
+        assertThat(builder.add(statement(2, "INSERT INTO `my db`.\"my table\" (`a b`, c) VALUES (3, 4)"))).isTrue();
+    }
+
+    @Test
+    void sends_the_merged_insert_as_a_single_block() {
+        // given
+        ScriptedJdbcTemplate jdbcTemplate = new ScriptedJdbcTemplate(new Results());
+
+        // when
+        Results results = merged().execute(jdbcTemplate, null, null);
+
+        // then
+        assertThat((Throwable) results.getException()).isNull();
+        assertThat(jdbcTemplate.executed).hasSize(1);
+        assertThat(jdbcTemplate.executed.get(0))
+                .startsWith("INSERT INTO events (id) SETTINGS insert_deduplicate = 1, insert_deduplication_token = '")
+                .endsWith(", max_insert_block_size = 3 VALUES (1),\n(2), (3)");
+    }
+
+    @Test
+    void executes_the_statements_one_by_one_when_the_rows_are_rejected() {
+        // given
+        SQLException cannotParse = new SQLException("Cannot parse input", null, 27);
+        ScriptedJdbcTemplate jdbcTemplate = new ScriptedJdbcTemplate(failed(cannotParse), new Results(), failed(cannotParse));
+        ClickHouseCoalescedInsertStatement merged = merged();
+
+        // when
+        Results results = merged.execute(jdbcTemplate, null, null);
+
+        // then
+        assertThat((Throwable) results.getException()).isSameAs(cannotParse);
+        assertThat(merged.getFailedStatement().getLineNumber()).isEqualTo(2);
+        assertThat(jdbcTemplate.executed).hasSize(3);
+        assertThat(jdbcTemplate.executed.get(1)).endsWith("-0' VALUES (1)");
+        assertThat(jdbcTemplate.executed.get(2)).endsWith("-1' VALUES (2), (3)");
+    }
+
+    @Test
+    void does_not_execute_the_statements_again_when_the_insert_may_have_been_stored() {
+        // given
+        SQLException timeout = new SQLException("Timeout exceeded", null, 159);
+        SQLException connectionReset = new SQLRecoverableException("Connection reset", null, 27);
+
+        // then
+        for (SQLException failure : Arrays.asList(timeout, connectionReset)) {
+            ScriptedJdbcTemplate jdbcTemplate = new ScriptedJdbcTemplate(failed(failure));
+            ClickHouseCoalescedInsertStatement merged = merged();
+
+            Results results = merged.execute(jdbcTemplate, null, null);
+
+            assertThat((Throwable) results.getException()).isSameAs(failure);
+            assertThat(merged.getFailedStatement()).isNull();
+            assertThat(jdbcTemplate.executed).hasSize(1);
+        }
+    }
+
+    private static ClickHouseCoalescedInsertStatement merged() {
+        Builder builder = Builder.start(statement(1, "INSERT INTO events (id) VALUES (1)"), Delimiter.SEMICOLON, 100, 1024);
+        builder.add(statement(2, "INSERT INTO events (id) VALUES (2), (3)"));
+        return (ClickHouseCoalescedInsertStatement) builder.build();
+    }
+
+    private static Results failed(SQLException e) {
+        Results results = new Results();
+        results.setException(e);
+        return results;
+    }
+
+    private static class ScriptedJdbcTemplate extends JdbcTemplate {
+        private final Deque<Results> results;
+        private final List<String> executed = new ArrayList<>();
+
+        ScriptedJdbcTemplate(Results... results) {
+            super(null, Types.NULL);
+            this.results = new ArrayDeque<>(Arrays.asList(results));
+        }
+
+        @Override
+        public Results executeStatement(String sql) {
+            executed.add(sql);
+            return results.pop();
+        }
+    }
+
+    private static ParsedSqlStatement statement(int line, String sql) {
+        return new ParsedSqlStatement(0, line, 1, sql, Delimiter.SEMICOLON, true, false);
+    }
+}
@@ -0,0 +1,76 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-clickhouse
+ * ========================================================================
+ * Copyright (C) 2010 - 2025 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+
+package org.flywaydb.community.database.clickhouse;
+
+import org.flywaydb.core.internal.sqlscript.Delimiter;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClickHouseInfileParsedStatementTest {
+
+    @Test
+    void streams_the_file_into_the_insert() {
+        // when
+        ClickHouseInfileParsedStatement statement = of("INSERT INTO events (id, name) FROM INFILE 'data/events.csv' FORMAT CSV");
+
+        // then
+        assertThat(statement).isNotNull();
+        assertThat(statement.getInsertSql()).isEqualTo("INSERT INTO events (id, name) FORMAT CSV");
+        assertThat(statement.getFile()).isEqualTo("data/events.csv");
+        assertThat(statement.getCompression()).isEqualTo("auto");
+        assertThat(statement.isBatchable()).isFalse();
+    }
+
+    @Test
+    void reads_the_compression_and_skips_leading_comments() {
+        // when
+        ClickHouseInfileParsedStatement statement = of("-- seed data\n/* gzipped */\ninsert into db.events\nfrom infile 'events.csv.gz' compression 'GZIP'\nformat TSV");
+
+        // then
+        assertThat(statement).isNotNull();
+        assertThat(statement.getInsertSql()).isEqualTo("insert into db.events format TSV");
+        assertThat(statement.getFile()).isEqualTo("events.csv.gz");
+        assertThat(statement.getCompression()).isEqualTo("gzip");
+    }
+
+    @Test
+    void unescapes_quotes_in_the_file_name() {
+        // when
+        ClickHouseInfileParsedStatement statement = of("INSERT INTO t FROM INFILE 'it''s \\'here\\'.csv' FORMAT CSV");
+
+        // then
+        assertThat(statement).isNotNull();
+        assertThat(statement.getFile()).isEqualTo("it's 'here'.csv");
+    }
+
+    @Test
+    void ignores_other_statements() {
+        assertThat(of("INSERT INTO t VALUES (1)")).isNull();
+        assertThat(of("INSERT INTO t SELECT * FROM file('data.csv', CSV)")).isNull();
+        assertThat(of("INSERT INTO t FROM INFILE 'data.csv'")).isNull();
+        assertThat(of("SELECT 'FROM INFILE ''x'' FORMAT CSV'")).isNull();
+    }
+
+    private static ClickHouseInfileParsedStatement of(String sql) {
+        return ClickHouseInfileParsedStatement.of(0, 1, 1, sql, Delimiter.SEMICOLON, true, null);
+    }
+}
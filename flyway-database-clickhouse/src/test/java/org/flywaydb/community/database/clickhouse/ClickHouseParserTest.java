@@ -0,0 +1,79 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-clickhouse
+ * ========================================================================
+ * Copyright (C) 2010 - 2025 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+
+package org.flywaydb.community.database.clickhouse;
+
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.internal.resource.StringResource;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+class ClickHouseParserTest {
+
+    @Test
+    void reads_settings_from_the_leading_comments() {
+        // given
+        String script = "-- Backfills the events table\n"
+                + "--clickhouse:settings max_threads = 4, mutations_sync=2\n"
+                + "\n"
+                + "-- CLICKHOUSE:SETTINGS log_comment = 'a, b'\n"
+                + "INSERT INTO events SELECT * FROM events_old;\n";
+
+        // when
+        Map<String, String> settings = ClickHouseParser.getScriptSettings(new StringResource(script));
+
+        // then
+        assertThat(settings).containsExactly(entry("max_threads", "4"), entry("mutations_sync", "2"), entry("log_comment", "'a, b'"));
+    }
+
+    @Test
+    void stops_at_the_first_statement() {
+        // given
+        String script = "CREATE TABLE t (id UInt8) ENGINE = Memory;\n"
+                + "-- clickhouse:settings max_threads = 4\n";
+
+        // then
+        assertThat(ClickHouseParser.getScriptSettings(new StringResource(script))).isEmpty();
+    }
+
+    @Test
+    void rejects_settings_without_a_value() {
+        // given
+        String script = "-- clickhouse:settings max_threads\nSELECT 1;\n";
+
+        // then
+        assertThatThrownBy(() -> ClickHouseParser.getScriptSettings(new StringResource(script)))
+                .isInstanceOf(FlywayException.class)
+                .hasMessageContaining("max_threads");
+    }
+
+    @Test
+    void splits_settings_on_commas_outside_quotes() {
+        assertThat(ClickHouseParser.splitSettings("a = 1, b = 'x,y', c = 'it''s, ok'"))
+                .containsExactly("a = 1", " b = 'x,y'", " c = 'it''s, ok'");
+        assertThat(ClickHouseParser.splitSettings("a = 1,")).containsExactly("a = 1");
+        assertThat(ClickHouseParser.splitSettings("")).isEmpty();
+    }
+}
@@ -0,0 +1,51 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-clickhouse
+ * ========================================================================
+ * Copyright (C) 2010 - 2025 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+
+package org.flywaydb.community.database.clickhouse;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClickHouseSqlScriptExecutorTest {
+
+    @Test
+    void restores_unchanged_settings_to_their_default() {
+        assertThat(ClickHouseSqlScriptExecutor.restoreValue(false, "UInt64", "8")).isEqualTo("DEFAULT");
+    }
+
+    @Test
+    void restores_numbers_unquoted() {
+        assertThat(ClickHouseSqlScriptExecutor.restoreValue(true, "UInt64", "8")).isEqualTo("8");
+        assertThat(ClickHouseSqlScriptExecutor.restoreValue(true, "Float", "0.5")).isEqualTo("0.5");
+    }
+
+    @Test
+    void restores_enum_settings_quoted() {
+        assertThat(ClickHouseSqlScriptExecutor.restoreValue(true, "LoadBalancing", "random")).isEqualTo("'random'");
+        assertThat(ClickHouseSqlScriptExecutor.restoreValue(true, "JoinAlgorithm", "hash,parallel_hash")).isEqualTo("'hash,parallel_hash'");
+    }
+
+    @Test
+    void restores_strings_quoted_and_escaped() {
+        assertThat(ClickHouseSqlScriptExecutor.restoreValue(true, "String", "42")).isEqualTo("'42'");
+        assertThat(ClickHouseSqlScriptExecutor.restoreValue(true, "String", "it's a\\b")).isEqualTo("'it\\'s a\\\\b'");
+    }
+}
@@ -21,19 +21,24 @@
 package org.flywaydb.community.database.timeplus;
 
 import lombok.Getter;
+import org.flywaydb.core.api.FlywayException;
 import org.flywaydb.core.extensibility.ConfigurationExtension;
 
+import java.util.Arrays;
+import java.util.Locale;
 import java.util.Map;
 
 @Getter
 public class TimeplusConfigurationExtension implements ConfigurationExtension {
     private static final String CLUSTER_NAME = "flyway.timeplus.clusterName";
     private static final String ZOOKEEPER_PATH = "flyway.timeplus.zookeeperPath";
+    private static final String HISTORY_STREAM_MODE = "flyway.timeplus.historyStreamMode";
 
     private static final String ZOOKEEPER_PATH_DEFAULT_VALUE = "/timeplus/tables/{shard}/{database}/{table}";
 
     private String clusterName;
     private String zookeeperPath = ZOOKEEPER_PATH_DEFAULT_VALUE;
+    private TimeplusHistoryStreamMode historyStreamMode = TimeplusHistoryStreamMode.APPEND;
 
     @Override
     public String getNamespace() {
@@ -51,6 +56,16 @@ public class TimeplusConfigurationExtension implements ConfigurationExtension {
         if (zookeeperPath != null) {
             this.zookeeperPath = zookeeperPath;
         }
+
+        String historyStreamMode = configuration.remove(HISTORY_STREAM_MODE);
+        if (historyStreamMode != null) {
+            try {
+                this.historyStreamMode = TimeplusHistoryStreamMode.valueOf(historyStreamMode.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new FlywayException("Invalid value for " + HISTORY_STREAM_MODE + ": " + historyStreamMode
+                        + ". Expected one of " + Arrays.toString(TimeplusHistoryStreamMode.values()), e);
+            }
+        }
     }
 
     @Override
@@ -61,6 +76,9 @@ public class TimeplusConfigurationExtension implements ConfigurationExtension {
         if ("FLYWAY_TIMEPLUS_ZOOKEEPER_PATH".equals(environmentVariable)) {
             return ZOOKEEPER_PATH;
         }
+        if ("FLYWAY_TIMEPLUS_HISTORY_STREAM_MODE".equals(environmentVariable)) {
+            return HISTORY_STREAM_MODE;
+        }
         return null;
     }
 }
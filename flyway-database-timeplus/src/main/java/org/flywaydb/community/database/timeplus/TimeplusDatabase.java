@@ -20,6 +20,7 @@
 
 package org.flywaydb.community.database.timeplus;
 
+import org.flywaydb.core.api.FlywayException;
 import org.flywaydb.core.api.configuration.Configuration;
 import org.flywaydb.core.internal.database.base.Database;
 import org.flywaydb.core.internal.database.base.Table;
@@ -31,10 +32,19 @@ import org.flywaydb.core.internal.util.StringUtils;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 public class TimeplusDatabase extends Database<TimeplusConnection> {
 
+    private static final String[] HISTORY_COLUMNS = {
+            "installed_rank", "version", "description", "type", "script", "checksum", "installed_by", "installed_on", "execution_time", "success"};
+
     private TimeplusConnection systemConnection;
+    private final Map<String, Boolean> keyedHistoryStreams = new ConcurrentHashMap<>();
 
     @Override
     public boolean useSingleConnection() {
@@ -53,6 +63,47 @@ public class TimeplusDatabase extends Database<TimeplusConnection> {
         return configuration.getPluginRegister().getPlugin(TimeplusConfigurationExtension.class).getZookeeperPath();
     }
 
+    public TimeplusHistoryStreamMode getHistoryStreamMode() {
+        return configuration.getPluginRegister().getPlugin(TimeplusConfigurationExtension.class).getHistoryStreamMode();
+    }
+
+    /**
+     * Whether the schema history stream is one of the keyed modes, read from its columns when it already exists, as
+     * the statements have to match the stream rather than the configuration.
+     *
+     * @throws FlywayException if the existing stream does not match the configured history stream mode.
+     */
+    private boolean isKeyedHistoryStream(Table table) {
+        boolean configured = getHistoryStreamMode() != TimeplusHistoryStreamMode.APPEND;
+        String key = table.toString();
+        Boolean keyed = keyedHistoryStreams.get(key);
+        if (keyed == null) {
+            List<String> columns;
+            try {
+                columns = getSystemConnection().getJdbcTemplate().queryForStringList(
+                        "SELECT name FROM system.columns WHERE database = ? AND table = ?", table.getSchema().getName(), table.getName());
+            } catch (SQLException e) {
+                throw new FlywaySqlException("Unable to read the columns of schema history stream " + table, e);
+            }
+            if (columns.isEmpty()) {
+                // Not created yet, it will be created in the configured mode
+                return configured;
+            }
+            keyed = columns.contains("is_deleted");
+            keyedHistoryStreams.put(key, keyed);
+        }
+        if (keyed != configured) {
+            throw new FlywayException("Schema history stream " + table + " was created " + (keyed ? "keyed, with" : "append-only, without")
+                                      + " an is_deleted column, but historyStreamMode is " + getHistoryStreamMode()
+                                      + ". Set historyStreamMode to the mode the stream was created in");
+        }
+        return keyed;
+    }
+
+    private String quoteColumns(String... columns) {
+        return Arrays.stream(columns).map(column -> quote(column)).collect(Collectors.joining(", "));
+    }
+
     public TimeplusConnection getSystemConnection() {
         // Queries on system.XX fail with "Code: 81. DB::Exception: Database the_database doesn't exist. (UNKNOWN_DATABASE) (version 23.7.1.2470 (official build))"
         // in case the current catalog (database) is not yet created.
@@ -119,8 +170,10 @@ public class TimeplusDatabase extends Database<TimeplusConnection> {
     public String getRawCreateScript(Table table, boolean baseline) {
         String clusterName = getClusterName();
         boolean isClustered = StringUtils.hasText(clusterName);
+        TimeplusHistoryStreamMode mode = getHistoryStreamMode();
 
-        String script = "CREATE STREAM IF NOT EXISTS " + table + (isClustered ? (" ON CLUSTER " + clusterName) : "") + "(" +
+        String script = "CREATE " + (mode == TimeplusHistoryStreamMode.MUTABLE ? "MUTABLE " : "") + "STREAM IF NOT EXISTS " + table
+                        + (isClustered ? (" ON CLUSTER " + clusterName) : "") + "(" +
                         "    installed_rank int32," +
                         "    version nullable(string)," +
                         "    description string," +
@@ -131,30 +184,72 @@ public class TimeplusDatabase extends Database<TimeplusConnection> {
                         "    installed_on datetime DEFAULT now()," +
                         "    execution_time int32," +
                         "    success bool" +
+                        (mode != TimeplusHistoryStreamMode.APPEND ? "," +
+                        "    is_deleted bool DEFAULT false" : "") +
                 ")";
 
-        String engine;
-
-        if (isClustered) {
-            engine = "ReplicatedMergeTree('" + getZookeeperPath() + "', '{replica}')";
+        if (mode == TimeplusHistoryStreamMode.VERSIONED_KV) {
+            script += " PRIMARY KEY (installed_rank) SETTINGS mode = 'versioned_kv';";
+        } else if (mode == TimeplusHistoryStreamMode.MUTABLE) {
+            script += " PRIMARY KEY (installed_rank);";
         } else {
-            engine = "MergeTree";
-        }
+            String engine;
+
+            if (isClustered) {
+                engine = "ReplicatedMergeTree('" + getZookeeperPath() + "', '{replica}')";
+            } else {
+                engine = "MergeTree";
+            }
 
-        script += " ENGINE = " + engine +
-                " PRIMARY KEY (script);";
+            script += " ENGINE = " + engine +
+                    " PRIMARY KEY (script);";
+        }
 
         return script + (baseline ? getBaselineStatement(table) + ";" : "");
     }
 
+    @Override
+    public String getSelectStatement(Table table) {
+        // Built from the inherited query so that the columns stay those Flyway reads
+        String select = super.getSelectStatement(table);
+        String from = " FROM " + table + " ";
+        String orderBy = " ORDER BY ";
+        if (!select.contains(from) || !select.contains(orderBy)) {
+            throw new FlywayException("Unable to adapt the schema history query to Timeplus: " + select);
+        }
+        // A plain SELECT on a stream is an unbounded streaming query, table() reads only the historical data
+        select = select.replace(from, " FROM table(" + table + ") ");
+        if (isKeyedHistoryStream(table)) {
+            int at = select.lastIndexOf(orderBy);
+            select = select.substring(0, at) + " AND NOT " + quote("is_deleted") + select.substring(at);
+        }
+        return select;
+    }
+
     @Override
     public Pair<String, Object> getDeleteStatement(Table table, boolean version, String filter) {
+        if (isKeyedHistoryStream(table)) {
+            // A tombstone replaces the row of the same installed_rank
+            return Pair.of("INSERT INTO " + table + " (" + quoteColumns(HISTORY_COLUMNS) + ", " + quote("is_deleted") + ")"
+                           + " SELECT " + quoteColumns(HISTORY_COLUMNS) + ", true"
+                           + " FROM table(" + table + ")"
+                           + " WHERE " + quote("success") + " = " + getBooleanFalse() + " AND NOT " + quote("is_deleted")
+                           + " AND " + (version ? quote("version") : quote("description")) + " = ?", filter);
+        }
         String deleteStatement = "ALTER STREAM " + table + " DELETE WHERE " + this.quote("success") + " = " + this.getBooleanFalse() + " AND " + (version ? this.quote("version") + " = ?" : this.quote("description") + " = ?");
         return Pair.of(deleteStatement, filter);
     }
 
     @Override
     public String getUpdateStatement(Table table) {
+        if (isKeyedHistoryStream(table)) {
+            // Same parameters as the mutation: description, type, checksum, installed_rank
+            return "INSERT INTO " + table + " (" + quoteColumns(HISTORY_COLUMNS) + ", " + quote("is_deleted") + ")"
+                   + " SELECT " + quoteColumns("installed_rank", "version") + ", ?, ?, " + quote("script") + ", ?, "
+                   + quoteColumns("installed_by", "installed_on", "execution_time", "success") + ", false"
+                   + " FROM table(" + table + ")"
+                   + " WHERE " + quote("installed_rank") + " = ? AND NOT " + quote("is_deleted");
+        }
         return "ALTER STREAM " + table
                + " UPDATE "
                + quote("description") + "=? , "
@@ -0,0 +1,41 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-timeplus
+ * ========================================================================
+ * Copyright (C) 2010 - 2024 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+
+package org.flywaydb.community.database.timeplus;
+
+/**
+ * Kind of stream the schema history is created as. It must not be changed for an existing schema history stream:
+ * Flyway checks it against the columns of the stream and fails on a mismatch.
+ */
+public enum TimeplusHistoryStreamMode {
+    /**
+     * Append-only stream. Repairs run ALTER STREAM ... UPDATE/DELETE mutations.
+     */
+    APPEND,
+    /**
+     * Stream with {@code mode = 'versioned_kv'} keyed by {@code installed_rank}. Repairs insert a newer version of
+     * a row, or a tombstone with {@code is_deleted = true}.
+     */
+    VERSIONED_KV,
+    /**
+     * Mutable stream keyed by {@code installed_rank}, with the same inserts as {@link #VERSIONED_KV}.
+     */
+    MUTABLE
+}
@@ -0,0 +1,119 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-yugabytedb
+ * ========================================================================
+ * Copyright (C) 2010 - 2025 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+
+package org.flywaydb.community.database.postgresql.yugabytedb;
+
+import lombok.CustomLog;
+import org.flywaydb.community.database.postgresql.yugabytedb.YugabyteDBExecutionTemplate.YBRetryStrategy;
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.internal.exception.FlywaySqlException;
+import org.flywaydb.core.internal.jdbc.JdbcTemplate;
+import org.flywaydb.core.internal.util.FlywayDbWebsiteLinks;
+
+import java.sql.SQLException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes Flyway operations with a session-level advisory lock, on clusters where YugabyteDB supports them.
+ * The lock lives in memory on the server, so no lock table is needed and nothing is left behind by a crashed runner.
+ */
+@CustomLog
+public class YugabyteDBAdvisoryLockTemplate {
+
+    /**
+     * Same key as the PostgreSQL plugin, so that both agree on the lock for a given schema history table.
+     */
+    private static final long LOCK_MAGIC_NUM =
+            (0x46L << 40) // F
+            + (0x6CL << 32) // l
+            + (0x79L << 24) // y
+            + (0x77 << 16) // w
+            + (0x61 << 8) // a
+            + 0x79; // y
+
+    private final YugabyteDBDatabase database;
+    private final JdbcTemplate jdbcTemplate;
+    private final String tableName;
+    private final long lockNum;
+
+    YugabyteDBAdvisoryLockTemplate(YugabyteDBDatabase database, JdbcTemplate jdbcTemplate, String tableName) {
+        this.database = database;
+        this.jdbcTemplate = jdbcTemplate;
+        this.tableName = tableName;
+        this.lockNum = LOCK_MAGIC_NUM + tableName.hashCode();
+    }
+
+    public <T> T execute(Callable<T> callable) {
+        RuntimeException error = null;
+        try {
+            lock();
+            return callable.call();
+        } catch (SQLException e) {
+            error = new FlywaySqlException("Unable to acquire YugabyteDB advisory lock", e);
+            throw error;
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
+        } catch (Exception e) {
+            error = new FlywayException(e);
+            throw error;
+        } finally {
+            unlock(error);
+        }
+    }
+
+    private void lock() throws SQLException {
+        YBRetryStrategy strategy = new YBRetryStrategy(database.getConfiguration().getLockRetryCount(), database.getLockRetryPolicy());
+        long start = System.nanoTime();
+        try {
+            strategy.doWithRetries(() -> tryLock() ? lockNum : 0L, "Interrupted while attempting to acquire YugabyteDB advisory lock",
+                    "Number of retries exceeded while attempting to acquire YugabyteDB advisory lock. " +
+                    "Configure the number of retries with the 'lockRetryCount' configuration option: " + FlywayDbWebsiteLinks.LOCK_RETRY_COUNT);
+            database.getLockListener().onLockAcquired(tableName, YugabyteDBLockMode.ADVISORY, strategy.getAttempts(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (FlywayException | SQLException e) {
+            database.getLockListener().onLockFailed(tableName, YugabyteDBLockMode.ADVISORY, strategy.getAttempts(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            throw e;
+        }
+    }
+
+    private boolean tryLock() throws SQLException {
+        return jdbcTemplate.queryForBoolean("SELECT pg_try_advisory_lock(" + lockNum + ")");
+    }
+
+    private void unlock(RuntimeException rethrow) {
+        try {
+            if (!jdbcTemplate.queryForBoolean("SELECT pg_advisory_unlock(" + lockNum + ")")) {
+                // Also reached when the lock was never acquired, in which case the original error matters more
+                if (rethrow == null) {
+                    throw new FlywayException("Unable to release YugabyteDB advisory lock");
+                }
+                LOG.debug("Advisory lock " + lockNum + " was not held while releasing it");
+            }
+        } catch (SQLException e) {
+            if (rethrow == null) {
+                throw new FlywaySqlException("Unable to release YugabyteDB advisory lock", e);
+            }
+            LOG.warn("Unable to release YugabyteDB advisory lock: " + e);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-yugabytedb
+ * ========================================================================
+ * Copyright (C) 2010 - 2025 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+
+package org.flywaydb.community.database.postgresql.yugabytedb;
+
+import lombok.Getter;
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.extensibility.ConfigurationExtension;
+import org.flywaydb.core.internal.util.StringUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+@Getter
+public class YugabyteDBConfigurationExtension implements ConfigurationExtension {
+    private static final String LOCK_MODE = "flyway.yugabytedb.lockMode";
+    private static final String LOCK_LEASE_MS = "flyway.yugabytedb.lockLeaseMs";
+    private static final String LOCK_RETRY_POLICY = "flyway.yugabytedb.lockRetryPolicy";
+    private static final String LOCK_RETRY_INITIAL_INTERVAL_MS = "flyway.yugabytedb.lockRetryInitialIntervalMs";
+    private static final String LOCK_RETRY_MAX_INTERVAL_MS = "flyway.yugabytedb.lockRetryMaxIntervalMs";
+    private static final String TABLE_SHARDING = "flyway.yugabytedb.tableSharding";
+    private static final String TABLE_TABLETS = "flyway.yugabytedb.tableTablets";
+    private static final String TABLE_COLOCATION = "flyway.yugabytedb.tableColocation";
+    private static final String FOLLOWER_READS = "flyway.yugabytedb.followerReads";
+    private static final String FOLLOWER_READ_STALENESS_MS = "flyway.yugabytedb.followerReadStalenessMs";
+    private static final String STATEMENT_RETRY_COUNT = "flyway.yugabytedb.statementRetryCount";
+    private static final String TRANSACTION_RETRY_COUNT = "flyway.yugabytedb.transactionRetryCount";
+    private static final String LOCK_LISTENERS = "flyway.yugabytedb.lockListeners";
+    private static final String LOCK_METRICS_JMX = "flyway.yugabytedb.lockMetricsJmx";
+    private static final String INDEX_PROGRESS_INTERVAL_MS = "flyway.yugabytedb.indexProgressIntervalMs";
+    private static final String INDEX_BACKFILL_MAX_DURATION_MS = "flyway.yugabytedb.indexBackfillMaxDurationMs";
+
+    private static final String LOCK_RETRY_POLICY_EXPONENTIAL = "exponential";
+    private static final String LOCK_RETRY_POLICY_FIXED = "fixed";
+
+    private YugabyteDBLockMode lockMode = YugabyteDBLockMode.TABLE;
+    private long lockLeaseMs = 15000;
+    private String lockRetryPolicy = LOCK_RETRY_POLICY_EXPONENTIAL;
+    private long lockRetryInitialIntervalMs = 100;
+    private long lockRetryMaxIntervalMs = 5000;
+    private YugabyteDBTablePlacement.Sharding tableSharding;
+    private Integer tableTablets;
+    private Boolean tableColocation;
+    private boolean followerReads;
+    private long followerReadStalenessMs = 30000;
+    private int statementRetryCount = 3;
+    private int transactionRetryCount;
+    private List<String> lockListeners = Collections.emptyList();
+    private boolean lockMetricsJmx;
+    private long indexProgressIntervalMs;
+    private long indexBackfillMaxDurationMs;
+
+    @Override
+    public String getNamespace() {
+        return "yugabytedb";
+    }
+
+    /**
+     * @return The retry policy used between two attempts to acquire the Flyway lock.
+     */
+    public YugabyteDBRetryPolicy createLockRetryPolicy() {
+        if (LOCK_RETRY_POLICY_FIXED.equals(lockRetryPolicy)) {
+            return YugabyteDBRetryPolicy.fixed(lockRetryInitialIntervalMs);
+        }
+        return YugabyteDBRetryPolicy.exponentialBackoff(lockRetryInitialIntervalMs, lockRetryMaxIntervalMs);
+    }
+
+    /**
+     * @return The placement of the lock and schema history tables, in the given tablespace if any.
+     */
+    YugabyteDBTablePlacement createTablePlacement(String tablespace) {
+        return new YugabyteDBTablePlacement(tableSharding, tableTablets, tableColocation, tablespace);
+    }
+
+    @Override
+    public void extractParametersFromConfiguration(Map<String, String> configuration) {
+        String lockMode = configuration.remove(LOCK_MODE);
+        if (lockMode != null) {
+            try {
+                this.lockMode = YugabyteDBLockMode.valueOf(lockMode.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new FlywayException("Invalid value for " + LOCK_MODE + ": " + lockMode
+                        + ". Expected one of " + Arrays.toString(YugabyteDBLockMode.values()), e);
+            }
+        }
+
+        String lockRetryPolicy = configuration.remove(LOCK_RETRY_POLICY);
+        if (lockRetryPolicy != null) {
+            lockRetryPolicy = lockRetryPolicy.trim().toLowerCase();
+            if (!LOCK_RETRY_POLICY_EXPONENTIAL.equals(lockRetryPolicy) && !LOCK_RETRY_POLICY_FIXED.equals(lockRetryPolicy)) {
+                throw new FlywayException("Invalid value for " + LOCK_RETRY_POLICY + ": " + lockRetryPolicy
+                        + ". Expected '" + LOCK_RETRY_POLICY_EXPONENTIAL + "' or '" + LOCK_RETRY_POLICY_FIXED + "'");
+            }
+            this.lockRetryPolicy = lockRetryPolicy;
+        }
+
+        this.lockLeaseMs = parseMillis(configuration, LOCK_LEASE_MS, lockLeaseMs);
+        if (lockLeaseMs < 1000) {
+            throw new FlywayException("Invalid value for " + LOCK_LEASE_MS + ": " + lockLeaseMs + ". Expected at least 1000 milliseconds");
+        }
+
+        this.lockRetryInitialIntervalMs = parseMillis(configuration, LOCK_RETRY_INITIAL_INTERVAL_MS, lockRetryInitialIntervalMs);
+        this.lockRetryMaxIntervalMs = parseMillis(configuration, LOCK_RETRY_MAX_INTERVAL_MS, lockRetryMaxIntervalMs);
+        if (lockRetryMaxIntervalMs < lockRetryInitialIntervalMs) {
+            throw new FlywayException(LOCK_RETRY_MAX_INTERVAL_MS + " (" + lockRetryMaxIntervalMs + ") must not be lower than "
+                    + LOCK_RETRY_INITIAL_INTERVAL_MS + " (" + lockRetryInitialIntervalMs + ")");
+        }
+
+        String tableSharding = configuration.remove(TABLE_SHARDING);
+        if (tableSharding != null) {
+            try {
+                this.tableSharding = YugabyteDBTablePlacement.Sharding.valueOf(tableSharding.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new FlywayException("Invalid value for " + TABLE_SHARDING + ": " + tableSharding
+                        + ". Expected one of " + Arrays.toString(YugabyteDBTablePlacement.Sharding.values()), e);
+            }
+        }
+
+        String tableTablets = configuration.remove(TABLE_TABLETS);
+        if (tableTablets != null) {
+            try {
+                this.tableTablets = Integer.parseInt(tableTablets.trim());
+            } catch (NumberFormatException e) {
+                throw new FlywayException("Invalid value for " + TABLE_TABLETS + ": " + tableTablets + ". Expected a number of tablets", e);
+            }
+            if (this.tableTablets < 1) {
+                throw new FlywayException("Invalid value for " + TABLE_TABLETS + ": " + tableTablets + ". Expected at least 1 tablet");
+            }
+        }
+
+        String tableColocation = configuration.remove(TABLE_COLOCATION);
+        if (tableColocation != null) {
+            this.tableColocation = Boolean.parseBoolean(tableColocation.trim());
+        }
+
+        String followerReads = configuration.remove(FOLLOWER_READS);
+        if (followerReads != null) {
+            this.followerReads = Boolean.parseBoolean(followerReads.trim());
+        }
+        this.followerReadStalenessMs = parseMillis(configuration, FOLLOWER_READ_STALENESS_MS, followerReadStalenessMs);
+
+        String statementRetryCount = configuration.remove(STATEMENT_RETRY_COUNT);
+        if (statementRetryCount != null) {
+            try {
+                this.statementRetryCount = Integer.parseInt(statementRetryCount.trim());
+            } catch (NumberFormatException e) {
+                throw new FlywayException("Invalid value for " + STATEMENT_RETRY_COUNT + ": " + statementRetryCount + ". Expected a number of retries", e);
+            }
+        }
+
+        String transactionRetryCount = configuration.remove(TRANSACTION_RETRY_COUNT);
+        if (transactionRetryCount != null) {
+            try {
+                this.transactionRetryCount = Integer.parseInt(transactionRetryCount.trim());
+            } catch (NumberFormatException e) {
+                throw new FlywayException("Invalid value for " + TRANSACTION_RETRY_COUNT + ": " + transactionRetryCount + ". Expected a number of retries", e);
+            }
+        }
+
+        String lockListeners = configuration.remove(LOCK_LISTENERS);
+        if (lockListeners != null) {
+            this.lockListeners = StringUtils.tokenizeToStringCollection(lockListeners, ",");
+        }
+
+        String lockMetricsJmx = configuration.remove(LOCK_METRICS_JMX);
+        if (lockMetricsJmx != null) {
+            this.lockMetricsJmx = Boolean.parseBoolean(lockMetricsJmx.trim());
+        }
+
+        this.indexProgressIntervalMs = parseMillis(configuration, INDEX_PROGRESS_INTERVAL_MS, indexProgressIntervalMs);
+        this.indexBackfillMaxDurationMs = parseMillis(configuration, INDEX_BACKFILL_MAX_DURATION_MS, indexBackfillMaxDurationMs);
+        if (indexBackfillMaxDurationMs > 0 && indexProgressIntervalMs == 0) {
+            throw new FlywayException(INDEX_BACKFILL_MAX_DURATION_MS + " is enforced while polling the index backfill progress and needs "
+                    + INDEX_PROGRESS_INTERVAL_MS + " to be greater than 0");
+        }
+    }
+
+    @Override
+    public String getConfigurationParameterFromEnvironmentVariable(String environmentVariable) {
+        if ("FLYWAY_YUGABYTEDB_LOCK_MODE".equals(environmentVariable)) {
+            return LOCK_MODE;
+        }
+        if ("FLYWAY_YUGABYTEDB_LOCK_LEASE_MS".equals(environmentVariable)) {
+            return LOCK_LEASE_MS;
+        }
+        if ("FLYWAY_YUGABYTEDB_LOCK_RETRY_POLICY".equals(environmentVariable)) {
+            return LOCK_RETRY_POLICY;
+        }
+        if ("FLYWAY_YUGABYTEDB_LOCK_RETRY_INITIAL_INTERVAL_MS".equals(environmentVariable)) {
+            return LOCK_RETRY_INITIAL_INTERVAL_MS;
+        }
+        if ("FLYWAY_YUGABYTEDB_LOCK_RETRY_MAX_INTERVAL_MS".equals(environmentVariable)) {
+            return LOCK_RETRY_MAX_INTERVAL_MS;
+        }
+        if ("FLYWAY_YUGABYTEDB_TABLE_SHARDING".equals(environmentVariable)) {
+            return TABLE_SHARDING;
+        }
+        if ("FLYWAY_YUGABYTEDB_TABLE_TABLETS".equals(environmentVariable)) {
+            return TABLE_TABLETS;
+        }
+        if ("FLYWAY_YUGABYTEDB_TABLE_COLOCATION".equals(environmentVariable)) {
+            return TABLE_COLOCATION;
+        }
+        if ("FLYWAY_YUGABYTEDB_FOLLOWER_READS".equals(environmentVariable)) {
+            return FOLLOWER_READS;
+        }
+        if ("FLYWAY_YUGABYTEDB_FOLLOWER_READ_STALENESS_MS".equals(environmentVariable)) {
+            return FOLLOWER_READ_STALENESS_MS;
+        }
+        if ("FLYWAY_YUGABYTEDB_STATEMENT_RETRY_COUNT".equals(environmentVariable)) {
+            return STATEMENT_RETRY_COUNT;
+        }
+        if ("FLYWAY_YUGABYTEDB_TRANSACTION_RETRY_COUNT".equals(environmentVariable)) {
+            return TRANSACTION_RETRY_COUNT;
+        }
+        if ("FLYWAY_YUGABYTEDB_LOCK_LISTENERS".equals(environmentVariable)) {
+            return LOCK_LISTENERS;
+        }
+        if ("FLYWAY_YUGABYTEDB_LOCK_METRICS_JMX".equals(environmentVariable)) {
+            return LOCK_METRICS_JMX;
+        }
+        if ("FLYWAY_YUGABYTEDB_INDEX_PROGRESS_INTERVAL_MS".equals(environmentVariable)) {
+            return INDEX_PROGRESS_INTERVAL_MS;
+        }
+        if ("FLYWAY_YUGABYTEDB_INDEX_BACKFILL_MAX_DURATION_MS".equals(environmentVariable)) {
+            return INDEX_BACKFILL_MAX_DURATION_MS;
+        }
+        return null;
+    }
+
+    private static long parseMillis(Map<String, String> configuration, String key, long defaultValue) {
+        String value = configuration.remove(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            long millis = Long.parseLong(value.trim());
+            if (millis < 0) {
+                throw new FlywayException("Invalid value for " + key + ": " + value + ". Expected a non-negative number of milliseconds");
+            }
+            return millis;
+        } catch (NumberFormatException e) {
+            throw new FlywayException("Invalid value for " + key + ": " + value + ". Expected a number of milliseconds", e);
+        }
+    }
+}
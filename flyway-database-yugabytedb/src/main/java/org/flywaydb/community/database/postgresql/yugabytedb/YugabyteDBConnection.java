@@ -20,16 +20,72 @@
 
 package org.flywaydb.community.database.postgresql.yugabytedb;
 
+import lombok.CustomLog;
+import org.flywaydb.core.api.FlywayException;
 import org.flywaydb.core.internal.database.base.Schema;
 import org.flywaydb.core.internal.database.base.Table;
+import org.flywaydb.core.internal.exception.FlywaySqlException;
 import org.flywaydb.database.postgresql.PostgreSQLConnection;
 
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.concurrent.Callable;
 
+@CustomLog
 public class YugabyteDBConnection extends PostgreSQLConnection {
 
+    /**
+     * The transactionRetryCount of the configuration each JDBC connection was opened with, for
+     * {@link YugabyteDBDatabaseType#createTransactionalExecutionTemplate}, which only gets the JDBC connection.
+     */
+    private static final Map<java.sql.Connection, Integer> TRANSACTION_RETRY_COUNTS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final String originalReadFromFollowers;
+    private final String originalFollowerReadStaleness;
+    private final String originalTransactionReadOnly;
+
     YugabyteDBConnection(YugabyteDBDatabase database, java.sql.Connection connection) {
         super(database, connection);
+        TRANSACTION_RETRY_COUNTS.put(connection, database.getTransactionRetryCount());
+        if (!database.isFollowerReads()) {
+            originalReadFromFollowers = null;
+            originalFollowerReadStaleness = null;
+            originalTransactionReadOnly = null;
+            return;
+        }
+        try {
+            originalReadFromFollowers = jdbcTemplate.queryForString("SHOW yb_read_from_followers");
+            originalFollowerReadStaleness = jdbcTemplate.queryForString("SHOW yb_follower_read_staleness_ms");
+            originalTransactionReadOnly = jdbcTemplate.queryForString("SHOW default_transaction_read_only");
+            // Follower reads only apply to read-only transactions, so the whole session becomes read-only
+            setFollowerReads("true", String.valueOf(database.getFollowerReadStalenessMillis()), "true");
+            LOG.debug("Reading from followers with a staleness of up to " + database.getFollowerReadStalenessMillis() + " ms");
+        } catch (SQLException e) {
+            throw new FlywaySqlException("Unable to enable YugabyteDB follower reads", e);
+        }
+    }
+
+    /**
+     * @return The number of retries of a transaction failing with a transient error, 0 for a connection not opened by Flyway.
+     */
+    static int getTransactionRetryCount(java.sql.Connection connection) {
+        return TRANSACTION_RETRY_COUNTS.getOrDefault(connection, 0);
+    }
+
+    @Override
+    protected void doRestoreOriginalState() throws SQLException {
+        super.doRestoreOriginalState();
+        if (originalReadFromFollowers != null) {
+            setFollowerReads(originalReadFromFollowers, originalFollowerReadStaleness, originalTransactionReadOnly);
+        }
+    }
+
+    private void setFollowerReads(String readFromFollowers, String stalenessMillis, String transactionReadOnly) throws SQLException {
+        jdbcTemplate.execute("SELECT set_config('yb_read_from_followers', ?, false), "
+                + "set_config('yb_follower_read_staleness_ms', ?, false), "
+                + "set_config('default_transaction_read_only', ?, false)", readFromFollowers, stalenessMillis, transactionReadOnly);
     }
 
     @Override
@@ -39,6 +95,14 @@ public class YugabyteDBConnection extends PostgreSQLConnection {
 
     @Override
     public <T> T lock(Table table, Callable<T> callable) {
-        return new YugabyteDBExecutionTemplate(jdbcTemplate, table.toString()).execute(callable);
+        YugabyteDBDatabase yugabyteDBDatabase = (YugabyteDBDatabase) database;
+        if (yugabyteDBDatabase.isFollowerReads()) {
+            throw new FlywayException("flyway.yugabytedb.followerReads makes the connection read-only and is only meant for "
+                    + "commands which do not change the schema history table, such as info and validate");
+        }
+        if (yugabyteDBDatabase.useAdvisoryLocks()) {
+            return new YugabyteDBAdvisoryLockTemplate(yugabyteDBDatabase, jdbcTemplate, table.toString()).execute(callable);
+        }
+        return new YugabyteDBExecutionTemplate(yugabyteDBDatabase, jdbcTemplate, table.toString()).execute(callable);
     }
 }
@@ -21,16 +21,23 @@
 package org.flywaydb.community.database.postgresql.yugabytedb;
 
 import lombok.CustomLog;
+import org.flywaydb.core.api.MigrationVersion;
 import org.flywaydb.core.api.configuration.Configuration;
 import org.flywaydb.core.internal.database.base.Table;
 import org.flywaydb.core.internal.exception.FlywaySqlException;
 import org.flywaydb.core.internal.jdbc.JdbcConnectionFactory;
 import org.flywaydb.core.internal.jdbc.StatementInterceptor;
+import org.flywaydb.core.internal.util.ClassUtils;
 import org.flywaydb.database.postgresql.PostgreSQLDatabase;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 
 @CustomLog
@@ -45,11 +52,32 @@ public class YugabyteDBDatabase extends PostgreSQLDatabase {
      * token row inserted in this table. The token row is inserted with the name
      * of the Flyway's migration history table as a token for simplicity.
      */
-    private static final String CREATE_LOCK_TABLE_DDL = "CREATE TABLE IF NOT EXISTS " + LOCK_TABLE_NAME + " (table_name varchar PRIMARY KEY, lock_id bigint, ts timestamp)";
+    private static final String CREATE_LOCK_TABLE_DDL = "CREATE TABLE IF NOT EXISTS " + LOCK_TABLE_NAME + " (table_name varchar, lock_id bigint, ts timestamp, %s)%s";
+    /**
+     * Advisory locks are only available from these releases on, and only when enabled on the cluster.
+     * Year-based stable releases before 2025 predate the feature despite their higher major number.
+     */
+    private static final Pattern YB_VERSION_PATTERN = Pattern.compile("-YB-(\\d+)\\.(\\d+)");
+    private static final String ADVISORY_LOCK_MIN_PREVIEW_VERSION = "2.25";
+    private static final String ADVISORY_LOCK_MIN_STABLE_VERSION = "2025.1";
+
+    /**
+     * JDBC URLs for which {@link #LOCK_TABLE_NAME} is known to exist with the expected schema. Checking it means a
+     * catalog query and possibly DDL, both expensive on YugabyteDB, so it is done once per URL and per JVM. An entry is
+     * evicted when the lock SQL finds the table missing, for instance after another process dropped it.
+     */
+    private static final Set<String> LOCK_TABLE_READY_URLS = ConcurrentHashMap.newKeySet();
+
+    private Boolean advisoryLocksSupported;
+    private YugabyteDBLockListener lockListener;
+    /**
+     * Schema history tables whose token row is known to exist in {@link #LOCK_TABLE_NAME}. Kept per database rather
+     * than per JVM, so that many Flyway instances locking different tables in parallel never contend on it.
+     */
+    private final Set<String> provisionedTokenRows = ConcurrentHashMap.newKeySet();
 
     public YugabyteDBDatabase(Configuration configuration, JdbcConnectionFactory jdbcConnectionFactory, StatementInterceptor statementInterceptor) {
         super(configuration, jdbcConnectionFactory, statementInterceptor);
-        createLockTable();
     }
 
     @Override
@@ -70,8 +98,9 @@ public class YugabyteDBDatabase extends PostgreSQLDatabase {
 
     @Override
     public String getRawCreateScript(Table table, boolean baseline) {
+        YugabyteDBTablePlacement placement = getTablePlacement();
         return "CREATE TABLE IF NOT EXISTS " + table + " (\n" +
-                "    \"installed_rank\" INT NOT NULL PRIMARY KEY,\n" +
+                "    \"installed_rank\" INT NOT NULL,\n" +
                 "    \"version\" VARCHAR(50),\n" +
                 "    \"description\" VARCHAR(200) NOT NULL,\n" +
                 "    \"type\" VARCHAR(20) NOT NULL,\n" +
@@ -80,10 +109,11 @@ public class YugabyteDBDatabase extends PostgreSQLDatabase {
                 "    \"installed_by\" VARCHAR(100) NOT NULL,\n" +
                 "    \"installed_on\" TIMESTAMP NOT NULL DEFAULT now(),\n" +
                 "    \"execution_time\" INTEGER NOT NULL,\n" +
-                "    \"success\" BOOLEAN NOT NULL\n" +
-                ");\n" +
+                "    \"success\" BOOLEAN NOT NULL,\n" +
+                "    " + placement.primaryKey("\"installed_rank\"") + "\n" +
+                ")" + placement.tableOptions() + ";\n" +
                 (baseline ? getBaselineStatement(table) + ";\n" : "") +
-                "CREATE INDEX IF NOT EXISTS \"" + table.getName() + "_s_idx\" ON " + table + " (\"success\");";
+                "CREATE INDEX IF NOT EXISTS \"" + table.getName() + "_s_idx\" ON " + table + " (" + placement.indexColumn("\"success\"") + ")" + placement.indexOptions() + ";";
     }
 
     @Override
@@ -91,12 +121,156 @@ public class YugabyteDBDatabase extends PostgreSQLDatabase {
         return true;
     }
 
+    public YugabyteDBLockMode getLockMode() {
+        return configuration.getPluginRegister().getPlugin(YugabyteDBConfigurationExtension.class).getLockMode();
+    }
+
+    public long getLockLeaseMillis() {
+        return configuration.getPluginRegister().getPlugin(YugabyteDBConfigurationExtension.class).getLockLeaseMs();
+    }
+
+    public YugabyteDBRetryPolicy getLockRetryPolicy() {
+        return configuration.getPluginRegister().getPlugin(YugabyteDBConfigurationExtension.class).createLockRetryPolicy();
+    }
+
+    public int getTransactionRetryCount() {
+        return configuration.getPluginRegister().getPlugin(YugabyteDBConfigurationExtension.class).getTransactionRetryCount();
+    }
+
+    @Override
+    public String getInsertStatement(Table table) {
+        YugabyteDBRetryingTransactionalExecutionTemplate.migrationRecorded();
+        return super.getInsertStatement(table);
+    }
+
+    /**
+     * @return Whether reads may be served by nearby followers, in which case the connection is read-only.
+     */
+    public boolean isFollowerReads() {
+        return configuration.getPluginRegister().getPlugin(YugabyteDBConfigurationExtension.class).isFollowerReads();
+    }
+
+    public long getFollowerReadStalenessMillis() {
+        return configuration.getPluginRegister().getPlugin(YugabyteDBConfigurationExtension.class).getFollowerReadStalenessMs();
+    }
+
+    /**
+     * @return The listener notified of lock events: the JVM-wide {@link YugabyteDBLockMetrics} followed by the
+     * configured listeners.
+     */
+    YugabyteDBLockListener getLockListener() {
+        if (lockListener == null) {
+            YugabyteDBConfigurationExtension extension = configuration.getPluginRegister().getPlugin(YugabyteDBConfigurationExtension.class);
+            YugabyteDBLockMetrics metrics = YugabyteDBLockMetrics.getInstance();
+            if (extension.isLockMetricsJmx()) {
+                metrics.registerMBean();
+            }
+            List<YugabyteDBLockListener> listeners = new ArrayList<>();
+            listeners.add(metrics);
+            for (String className : extension.getLockListeners()) {
+                listeners.add(ClassUtils.instantiate(className, configuration.getClassLoader()));
+            }
+            lockListener = new YugabyteDBLockListeners(listeners);
+        }
+        return lockListener;
+    }
+
+    YugabyteDBTablePlacement getTablePlacement() {
+        return configuration.getPluginRegister().getPlugin(YugabyteDBConfigurationExtension.class).createTablePlacement(configuration.getTablespace());
+    }
+
+    /**
+     * Opens a new connection, independent from the main connection, for work running next to the Flyway operation.
+     * The caller is responsible for closing it.
+     */
+    Connection openSideConnection() {
+        return jdbcConnectionFactory.openConnection();
+    }
+
+    /**
+     * @return Whether {@link YugabyteDBLockMode#ADVISORY} is configured and the server can honour it.
+     */
+    public boolean useAdvisoryLocks() {
+        if (getLockMode() != YugabyteDBLockMode.ADVISORY) {
+            return false;
+        }
+        if (advisoryLocksSupported == null) {
+            advisoryLocksSupported = detectAdvisoryLockSupport();
+            if (!advisoryLocksSupported) {
+                LOG.info("Advisory locks are not available on this YugabyteDB cluster. Falling back to locking through " + LOCK_TABLE_NAME);
+            }
+        }
+        return advisoryLocksSupported;
+    }
+
+    private boolean detectAdvisoryLockSupport() {
+        try {
+            Matcher matcher = YB_VERSION_PATTERN.matcher(jdbcTemplate.queryForString("SELECT version()"));
+            if (!matcher.find()) {
+                return false;
+            }
+            MigrationVersion ybVersion = MigrationVersion.fromVersion(matcher.group(1) + "." + matcher.group(2));
+            boolean recentEnough = ybVersion.getMajor().intValue() == 2
+                    ? ybVersion.isAtLeast(ADVISORY_LOCK_MIN_PREVIEW_VERSION)
+                    : ybVersion.isAtLeast(ADVISORY_LOCK_MIN_STABLE_VERSION);
+            if (!recentEnough) {
+                LOG.debug("YugabyteDB " + ybVersion + " does not support advisory locks");
+                return false;
+            }
+            // Releasing a lock that is not held is harmless, but fails when advisory locks are disabled on the cluster
+            jdbcTemplate.queryForBoolean("SELECT pg_advisory_unlock(0)");
+            return true;
+        } catch (SQLException e) {
+            LOG.debug("Advisory locks are not usable, SQLState: " + e.getSQLState() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Creates {@link #LOCK_TABLE_NAME} when needed, on the first lock taken against this JDBC URL. Commands which never
+     * lock, such as info and validate, never touch it.
+     */
+    void ensureLockTable() {
+        String url = getLockTableCacheKey();
+        if (LOCK_TABLE_READY_URLS.contains(url)) {
+            return;
+        }
+        provisionedTokenRows.clear();
+        createLockTable();
+        LOCK_TABLE_READY_URLS.add(url);
+    }
+
+    /**
+     * Forgets that {@link #LOCK_TABLE_NAME} exists, after a clean or drop may have removed it.
+     */
+    void lockTableDropped() {
+        LOCK_TABLE_READY_URLS.remove(getLockTableCacheKey());
+        provisionedTokenRows.clear();
+    }
+
+    Set<String> getProvisionedTokenRows() {
+        return provisionedTokenRows;
+    }
+
+    private String getLockTableCacheKey() {
+        try {
+            return getJdbcMetaData().getURL();
+        } catch (SQLException e) {
+            throw new FlywaySqlException("Unable to read the JDBC URL", e);
+        }
+    }
+
+    private String getCreateLockTableDdl() {
+        YugabyteDBTablePlacement placement = getTablePlacement();
+        return String.format(CREATE_LOCK_TABLE_DDL, placement.primaryKey("table_name"), placement.tableOptions());
+    }
+
     private void createLockTable() {
         try {
             List<String> columns = jdbcTemplate.query(LOCK_TABLE_SCHEMA_SQL, rs -> rs.getString("column_name"));
             if (columns.isEmpty()) {
                 LOG.debug("Lock table not found, creating it...");
-                jdbcTemplate.execute(CREATE_LOCK_TABLE_DDL);
+                jdbcTemplate.execute(getCreateLockTableDdl());
             } else {
                 for (String column : columns) {
                     if ("lock_id".equals(column)) {
@@ -106,7 +280,7 @@ public class YugabyteDBDatabase extends PostgreSQLDatabase {
                 }
                 LOG.info("Lock table exists but has old schema. Dropping and recreating it with new schema...");
                 jdbcTemplate.execute(DROP_LOCK_TABLE_IF_EXISTS_DDL);
-                jdbcTemplate.execute(CREATE_LOCK_TABLE_DDL);
+                jdbcTemplate.execute(getCreateLockTableDdl());
             }
         } catch (SQLException e) {
             throw new FlywaySqlException("Unable to initialize the lock table", e);
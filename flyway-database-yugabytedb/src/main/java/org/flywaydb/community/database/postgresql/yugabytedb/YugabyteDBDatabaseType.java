@@ -23,18 +23,23 @@ package org.flywaydb.community.database.postgresql.yugabytedb;
 import org.flywaydb.community.database.YugabyteDBDatabaseExtension;
 import org.flywaydb.core.api.ResourceProvider;
 import org.flywaydb.core.api.configuration.Configuration;
+import org.flywaydb.core.internal.callback.CallbackExecutor;
 import org.flywaydb.core.internal.database.base.CommunityDatabaseType;
 import org.flywaydb.core.internal.database.base.Database;
+import org.flywaydb.core.internal.jdbc.ExecutionTemplate;
 import org.flywaydb.core.internal.jdbc.JdbcConnectionFactory;
+import org.flywaydb.core.internal.jdbc.JdbcTemplate;
 import org.flywaydb.core.internal.jdbc.StatementInterceptor;
 import org.flywaydb.core.internal.parser.Parser;
 import org.flywaydb.core.internal.parser.ParsingContext;
+import org.flywaydb.core.internal.sqlscript.SqlScriptExecutorFactory;
 import org.flywaydb.database.postgresql.PostgreSQLDatabaseType;
 
 import java.sql.Connection;
 import java.util.regex.Pattern;
 
 public class YugabyteDBDatabaseType extends PostgreSQLDatabaseType implements CommunityDatabaseType {
+
     @Override
     public String getName() {
         return "YugabyteDB";
@@ -68,6 +73,25 @@ public class YugabyteDBDatabaseType extends PostgreSQLDatabaseType implements Co
         return new YugabyteDBParser(configuration, parsingContext);
     }
 
+    @Override
+    public SqlScriptExecutorFactory createSqlScriptExecutorFactory(JdbcConnectionFactory jdbcConnectionFactory,
+                                                                   CallbackExecutor callbackExecutor,
+                                                                   StatementInterceptor statementInterceptor) {
+        boolean supportsBatch = jdbcConnectionFactory.isSupportsBatch();
+        return (connection, undo, batch, outputQueryResults) -> new YugabyteDBSqlScriptExecutor(new JdbcTemplate(connection, this),
+                jdbcConnectionFactory, callbackExecutor, undo, supportsBatch && batch, outputQueryResults, statementInterceptor);
+    }
+
+    @Override
+    public ExecutionTemplate createTransactionalExecutionTemplate(Connection connection, boolean rollbackOnException) {
+        // Taken from the configuration the connection was opened with, as this plugin instance may serve several
+        int transactionRetryCount = YugabyteDBConnection.getTransactionRetryCount(connection);
+        if (transactionRetryCount <= 0) {
+            return super.createTransactionalExecutionTemplate(connection, rollbackOnException);
+        }
+        return new YugabyteDBRetryingTransactionalExecutionTemplate(connection, rollbackOnException, transactionRetryCount);
+    }
+
     @Override
     public String getPluginVersion(Configuration config) {
         return YugabyteDBDatabaseExtension.readVersion();
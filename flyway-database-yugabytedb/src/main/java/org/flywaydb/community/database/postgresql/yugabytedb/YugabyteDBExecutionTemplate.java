@@ -28,33 +28,50 @@ import org.flywaydb.core.internal.util.SqlCallable;
 
 import java.sql.*;
 import java.time.Instant;
-import java.util.Map;
-import java.util.Random;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 @CustomLog
 public class YugabyteDBExecutionTemplate {
 
+    private final YugabyteDBDatabase database;
     private final JdbcTemplate jdbcTemplate;
     private final String tableName;
-    private static final Map<String, Boolean> tableEntries = new ConcurrentHashMap<>();
-    private static final Random random = new Random();
+    private final YugabyteDBLockMode lockMode;
     public static final int DEFAULT_LOCK_ID_TTL = 1000 * 60 * 5;
     public static final int MAX_LOCK_ID_TTL = 1000 * 60 * 60;
     public static final String LOCK_ID_TTL_SYS_PROP_NAME = "flyway.yugabytedb.lock-id-ttl-ms";
 
-    YugabyteDBExecutionTemplate(JdbcTemplate jdbcTemplate, String tableName) {
+    /**
+     * The heartbeat of the lease held by the Flyway operation running on this thread, checked before each statement.
+     */
+    private static final ThreadLocal<YugabyteDBLockHeartbeat> HELD = new ThreadLocal<>();
+
+    YugabyteDBExecutionTemplate(YugabyteDBDatabase database, JdbcTemplate jdbcTemplate, String tableName) {
+        this.database = database;
         this.jdbcTemplate = jdbcTemplate;
         this.tableName = tableName;
+        // ADVISORY only gets here when advisory locks are unavailable
+        this.lockMode = database.getLockMode() == YugabyteDBLockMode.ADVISORY ? YugabyteDBLockMode.TABLE : database.getLockMode();
     }
 
     public <T> T execute(Callable<T> callable) {
         Exception error = null;
         long lockId = 0;
+        YugabyteDBLockHeartbeat heartbeat = null;
+        YugabyteDBLockHeartbeat outer = HELD.get();
         try {
             lockId = lock();
-            return callable.call();
+            if (lockMode == YugabyteDBLockMode.LEASE) {
+                heartbeat = new YugabyteDBLockHeartbeat(database, tableName, lockId, database.getLockLeaseMillis()).start();
+                HELD.set(heartbeat);
+            }
+            T result = callable.call();
+            if (heartbeat != null) {
+                heartbeat.checkLease();
+            }
+            return result;
         } catch (RuntimeException e) {
             error = e;
             throw e;
@@ -62,18 +79,137 @@ public class YugabyteDBExecutionTemplate {
             error = e;
             throw new FlywayException(e);
         } finally {
+            if (heartbeat != null) {
+                HELD.set(outer);
+                heartbeat.close();
+            }
             if (lockId != 0) {
-                unlock(lockId, error);
+                if (lockMode != YugabyteDBLockMode.TABLE) {
+                    unlockAtomic(lockId, error);
+                } else {
+                    unlock(lockId, error);
+                }
             }
         }
     }
 
+    /**
+     * Fails the statement about to run if the lease of the Flyway operation on this thread was taken over, rather than
+     * letting the rest of the migration run without the lock.
+     */
+    static void checkHeldLease() {
+        YugabyteDBLockHeartbeat held = HELD.get();
+        if (held != null) {
+            held.checkLease();
+        }
+    }
+
     private long lock() throws SQLException {
-        YBRetryStrategy strategy = new YBRetryStrategy();
+        database.ensureLockTable();
+        YBRetryStrategy strategy = new YBRetryStrategy(database.getConfiguration().getLockRetryCount(), database.getLockRetryPolicy());
+        long start = System.nanoTime();
+        try {
+            long lockId;
+            try {
+                lockId = acquire(strategy);
+            } catch (FlywaySqlException e) {
+                if (!isUndefinedTable(e)) {
+                    throw e;
+                }
+                // The lock table was cached as ready, but another process dropped it since
+                LOG.info(Thread.currentThread().getName() + "> " + YugabyteDBDatabase.LOCK_TABLE_NAME + " no longer exists. Recreating it...");
+                database.lockTableDropped();
+                database.ensureLockTable();
+                lockId = acquire(strategy);
+            }
+            database.getLockListener().onLockAcquired(tableName, lockMode, strategy.getAttempts(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return lockId;
+        } catch (FlywayException | SQLException e) {
+            database.getLockListener().onLockFailed(tableName, lockMode, strategy.getAttempts(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            throw e;
+        }
+    }
+
+    private long acquire(YBRetryStrategy strategy) throws SQLException {
+        if (lockMode != YugabyteDBLockMode.TABLE) {
+            long lockIdTtl = lockMode == YugabyteDBLockMode.LEASE ? database.getLockLeaseMillis() : getLockIdTtl();
+            return strategy.doWithRetries(() -> tryLockAtomic(lockIdTtl), "Interrupted while attempting to acquire lock through INSERT ... ON CONFLICT",
+                    "Number of retries exceeded while attempting to acquire lock through INSERT ... ON CONFLICT. " +
+                    "Configure the number of retries with the 'lockRetryCount' configuration option: " + FlywayDbWebsiteLinks.LOCK_RETRY_COUNT);
+        }
         return strategy.doWithRetries(this::tryLock, "Interrupted while attempting to acquire lock through SELECT ... FOR UPDATE",
                 "Number of retries exceeded while attempting to acquire lock through SELECT ... FOR UPDATE. " +
                 "Configure the number of retries with the 'lockRetryCount' configuration option: " + FlywayDbWebsiteLinks.LOCK_RETRY_COUNT);
+    }
+
+    private static boolean isUndefinedTable(FlywaySqlException e) {
+        return e.getCause() instanceof SQLException && "42P01".equals(((SQLException) e.getCause()).getSQLState());
+    }
+
+    /**
+     * Acquires the token row, or steals it once it is older than {@code lockIdTtl}, in a single round trip. The row is created
+     * on the fly if it does not exist yet, so no separate token-row INSERT is needed. Expiry is computed with the
+     * server clock, in UTC, so that runners with skewed clocks or different time zones agree on it.
+     *
+     * @return The new lock_id if the lock was acquired, 0 otherwise.
+     */
+    private long tryLockAtomic(long lockIdTtl) {
+        long lockIdToBeReturned = nextLockId();
+        String upsert = "WITH prev AS (SELECT lock_id FROM " + YugabyteDBDatabase.LOCK_TABLE_NAME + " WHERE table_name = ?) "
+                + "INSERT INTO " + YugabyteDBDatabase.LOCK_TABLE_NAME + " AS l (table_name, lock_id, ts) "
+                + "VALUES (?, ?, now() AT TIME ZONE 'UTC') "
+                + "ON CONFLICT (table_name) DO UPDATE SET lock_id = EXCLUDED.lock_id, ts = EXCLUDED.ts "
+                + "WHERE l.lock_id = 0 OR l.ts < (now() AT TIME ZONE 'UTC') - ? * INTERVAL '1 millisecond' "
+                + "RETURNING (SELECT lock_id FROM prev) AS prev_lock_id";
+        try (PreparedStatement statement = jdbcTemplate.getConnection().prepareStatement(upsert)) {
+            statement.setString(1, tableName);
+            statement.setString(2, tableName);
+            statement.setLong(3, lockIdToBeReturned);
+            statement.setLong(4, lockIdTtl);
+            try (ResultSet rs = statement.executeQuery()) {
+                if (!rs.next()) {
+                    LOG.debug(Thread.currentThread().getName() + "> Another Flyway operation is in progress. Allowing it to complete");
+                    return 0;
+                }
+                long lockIdRead = rs.getLong("prev_lock_id");
+                if (lockIdRead != 0) {
+                    LOG.warn(Thread.currentThread().getName() + "> Lock with lock_id " + lockIdRead + " is held for more than " + lockIdTtl + " millis. Resetting it with lock_id " + lockIdToBeReturned);
+                    database.getLockListener().onLockStolen(tableName, lockIdRead);
+                } else {
+                    LOG.debug(Thread.currentThread().getName() + "> Setting lock_id = " + lockIdToBeReturned);
+                }
+                return lockIdToBeReturned;
+            }
+        } catch (SQLException e) {
+            LOG.debug(Thread.currentThread().getName() + "> Unable to perform lock action, SQLState: " + e.getSQLState());
+            if (!"40001".equalsIgnoreCase(e.getSQLState())) {
+                throw new FlywaySqlException("Unable to perform lock action", e);
+            }
+            database.getLockListener().onLockConflict(tableName);
+            return 0;
+        }
+    }
+
+    private static long nextLockId() {
+        long lockId = 0;
+        while (lockId == 0) {
+            lockId = ThreadLocalRandom.current().nextLong();
+        }
+        return lockId;
+    }
 
+    private static long getLockIdTtl() {
+        long lockIdTtl = DEFAULT_LOCK_ID_TTL;
+        String sysProp = System.getProperty(LOCK_ID_TTL_SYS_PROP_NAME);
+        if (sysProp != null) {
+            try {
+                lockIdTtl = Long.parseLong(sysProp);
+                lockIdTtl = lockIdTtl < 0 || lockIdTtl > MAX_LOCK_ID_TTL ? DEFAULT_LOCK_ID_TTL : lockIdTtl;
+            } catch (NumberFormatException e) {
+                LOG.warn("Invalid value for " + LOCK_ID_TTL_SYS_PROP_NAME + ": " + sysProp + ". Using default value: " + DEFAULT_LOCK_ID_TTL + " ms");
+            }
+        }
+        return lockIdTtl;
     }
 
     private long tryLock() {
@@ -84,22 +220,20 @@ public class YugabyteDBExecutionTemplate {
         try {
             statement = jdbcTemplate.getConnection().createStatement();
 
-            if (!tableEntries.containsKey(tableName)) {
-                try {
-                    String now = new Timestamp(Instant.now().getEpochSecond()).toString();
-                    statement.executeUpdate("INSERT INTO "
-                            + YugabyteDBDatabase.LOCK_TABLE_NAME
-                            + " VALUES ('" + tableName + "', 0, '" + now + "')");
-                    tableEntries.put(tableName, true);
-                    LOG.info("insert query ts: " + now);
-                    LOG.info(Thread.currentThread().getName() + "> Inserted a token row for " + tableName + " in " + YugabyteDBDatabase.LOCK_TABLE_NAME);
-                } catch (SQLException e) {
-                    if ("23505".equals(e.getSQLState())) {
-                        // 23505 == UNIQUE_VIOLATION
-                        LOG.debug(Thread.currentThread().getName() + "> Token row already added for " + tableName);
+            if (!database.getProvisionedTokenRows().contains(tableName)) {
+                try (PreparedStatement insert = jdbcTemplate.getConnection().prepareStatement("INSERT INTO "
+                        + YugabyteDBDatabase.LOCK_TABLE_NAME
+                        + " (table_name, lock_id, ts) VALUES (?, 0, ?) ON CONFLICT (table_name) DO NOTHING")) {
+                    insert.setString(1, tableName);
+                    insert.setTimestamp(2, new Timestamp(Instant.now().getEpochSecond()));
+                    if (insert.executeUpdate() > 0) {
+                        LOG.info(Thread.currentThread().getName() + "> Inserted a token row for " + tableName + " in " + YugabyteDBDatabase.LOCK_TABLE_NAME);
                     } else {
-                        throw new FlywaySqlException("Could not add token row for " + tableName + " in table " + YugabyteDBDatabase.LOCK_TABLE_NAME, e);
+                        LOG.debug(Thread.currentThread().getName() + "> Token row already added for " + tableName);
                     }
+                    database.getProvisionedTokenRows().add(tableName);
+                } catch (SQLException e) {
+                    throw new FlywaySqlException("Could not add token row for " + tableName + " in table " + YugabyteDBDatabase.LOCK_TABLE_NAME, e);
                 }
             }
 
@@ -117,23 +251,15 @@ public class YugabyteDBExecutionTemplate {
                 lockIdRead = rs.getLong("lock_id");
                 Timestamp tsRead = rs.getTimestamp("ts");
                 String current = new Timestamp(Instant.now().getEpochSecond()).toString();
-                long lockIdTtl = DEFAULT_LOCK_ID_TTL;
-                String sysProp = System.getProperty(LOCK_ID_TTL_SYS_PROP_NAME);
-                if (sysProp != null) {
-                    try {
-                        lockIdTtl = Long.parseLong(sysProp);
-                        lockIdTtl = lockIdTtl < 0 || lockIdTtl > MAX_LOCK_ID_TTL ? DEFAULT_LOCK_ID_TTL : lockIdTtl;
-                    } catch (NumberFormatException e) {
-                        LOG.warn("Invalid value for " + LOCK_ID_TTL_SYS_PROP_NAME + ": " + sysProp + ". Using default value: " + DEFAULT_LOCK_ID_TTL + " ms");
-                    }
-                }
+                long lockIdTtl = getLockIdTtl();
 
                 if (lockIdRead == 0 || Instant.now().getEpochSecond() - tsRead.getTime() > lockIdTtl) {
-                    lockIdToBeReturned = random.nextLong();
+                    lockIdToBeReturned = nextLockId();
                     if (lockIdRead == 0) {
                         LOG.debug(Thread.currentThread().getName() + "> Setting lock_id = " + lockIdToBeReturned);
                     } else {
                         LOG.warn(Thread.currentThread().getName() + "> Lock with lock_id " + lockIdRead + " is held for more than " + lockIdTtl + " millis. Resetting it with lock_id " + lockIdToBeReturned);
+                        database.getLockListener().onLockStolen(tableName, lockIdRead);
                     }
                     String updateLockId = "UPDATE " + YugabyteDBDatabase.LOCK_TABLE_NAME
                             + " SET lock_id = " + lockIdToBeReturned + ", ts = '" + current + "' WHERE table_name = '"
@@ -145,7 +271,7 @@ public class YugabyteDBExecutionTemplate {
                 }
             } else {
                 // For some reason the record was not found, retry
-                tableEntries.remove(tableName);
+                database.getProvisionedTokenRows().remove(tableName);
             }
 
         } catch (SQLException e) {
@@ -154,6 +280,7 @@ public class YugabyteDBExecutionTemplate {
                 exception = new FlywaySqlException("Unable to perform lock action", e);
                 throw (FlywaySqlException) exception;
             } // else retry
+            database.getLockListener().onLockConflict(tableName);
         } finally {
             if (txStarted) {
                 try {
@@ -188,6 +315,7 @@ public class YugabyteDBExecutionTemplate {
                     String msgLock = "Expected and actual lock_id mismatch. Expected: " + prevLockId + ", Actual: " + lockId;
                     String msg = "Unlock failed but the Flyway operation may have succeeded. Check your Flyway operation before re-trying";
                     LOG.warn(Thread.currentThread().getName() + "> " + msg + "\n" + msgLock);
+                    database.getLockListener().onUnlockMismatch(tableName, prevLockId);
                     if (rethrow == null) {
                         throw new FlywayException(msg);
                     }
@@ -212,49 +340,97 @@ public class YugabyteDBExecutionTemplate {
         }
     }
 
+    private void unlockAtomic(long prevLockId, Exception rethrow) {
+        String update = "UPDATE " + YugabyteDBDatabase.LOCK_TABLE_NAME + " SET lock_id = 0 WHERE table_name = ? AND lock_id = ?";
+        try (PreparedStatement statement = jdbcTemplate.getConnection().prepareStatement(update)) {
+            statement.setString(1, tableName);
+            statement.setLong(2, prevLockId);
+            if (statement.executeUpdate() == 0) {
+                // Unexpected. This may happen only when callable took too long to complete
+                // and another thread forcefully reset it.
+                String msg = "Unlock failed but the Flyway operation may have succeeded. Check your Flyway operation before re-trying";
+                LOG.warn(Thread.currentThread().getName() + "> " + msg + "\nExpected lock_id " + prevLockId + " was no longer set");
+                database.getLockListener().onUnlockMismatch(tableName, prevLockId);
+                if (rethrow == null) {
+                    throw new FlywayException(msg);
+                }
+            } else {
+                LOG.debug(Thread.currentThread().getName() + "> Reset lock_id " + prevLockId);
+            }
+        } catch (SQLException e) {
+            if (rethrow == null) {
+                throw new FlywaySqlException("Unable to perform unlock action for lock_id " + prevLockId, e);
+            }
+            LOG.warn("Unable to perform unlock action for lock_id " + prevLockId + ": " + e);
+        }
+    }
+
     public static class YBRetryStrategy {
-        private static int numberOfRetries = 50;
-        private static boolean unlimitedRetries;
+        private final boolean unlimited;
+        private final YugabyteDBRetryPolicy retryPolicy;
+        private final Sleeper sleeper;
         private int numberOfRetriesRemaining;
+        private int attempt;
 
-        public YBRetryStrategy() {
-            this.numberOfRetriesRemaining = numberOfRetries;
+        /**
+         * @param retries The number of retries after the first attempt. A negative value retries forever.
+         * @param retryPolicy The policy deciding how long to wait between two attempts.
+         */
+        public YBRetryStrategy(int retries, YugabyteDBRetryPolicy retryPolicy) {
+            this(retries, retryPolicy, Thread::sleep);
         }
 
-        public static void setNumberOfRetries(int retries) {
-            numberOfRetries = retries;
-            unlimitedRetries = retries < 0;
+        YBRetryStrategy(int retries, YugabyteDBRetryPolicy retryPolicy, Sleeper sleeper) {
+            this.numberOfRetriesRemaining = retries;
+            this.unlimited = retries < 0;
+            this.retryPolicy = retryPolicy;
+            this.sleeper = sleeper;
         }
 
         private boolean hasMoreRetries() {
-            return unlimitedRetries || this.numberOfRetriesRemaining > 0;
+            return unlimited || this.numberOfRetriesRemaining > 0;
         }
 
         private void nextRetry() {
-            if (!unlimitedRetries) {
+            if (!unlimited) {
                 --this.numberOfRetriesRemaining;
             }
         }
 
-        private int nextWaitInMilliseconds() {
-            return 1000;
+        /**
+         * @return The number of attempts made so far.
+         */
+        public int getAttempts() {
+            return attempt + 1;
+        }
+
+        private long nextWaitInMilliseconds() {
+            return retryPolicy.nextWaitInMilliseconds(attempt++);
         }
 
         public long doWithRetries(SqlCallable<Long> callable, String interruptionMessage, String retriesExceededMessage) throws SQLException {
-            long id = 0;
-            while(id == 0) {
-                id = callable.call();
-                try {
-                    Thread.sleep(this.nextWaitInMilliseconds());
-                } catch (InterruptedException e) {
-                    throw new FlywayException(interruptionMessage, e);
-                }
+            long id = callable.call();
+            while (id == 0) {
                 if (!this.hasMoreRetries()) {
                     throw new FlywayException(retriesExceededMessage);
                 }
                 this.nextRetry();
+                try {
+                    sleeper.sleep(this.nextWaitInMilliseconds());
+                } catch (InterruptedException e) {
+                    throw new FlywayException(interruptionMessage, e);
+                }
+                id = callable.call();
             }
             return id;
         }
+
+        /**
+         * Waits between two attempts, {@link Thread#sleep(long)} outside of tests.
+         */
+        @FunctionalInterface
+        interface Sleeper {
+            void sleep(long millis) throws InterruptedException;
+        }
     }
 }
@@ -0,0 +1,145 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-yugabytedb
+ * ========================================================================
+ * Copyright (C) 2010 - 2025 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+
+package org.flywaydb.community.database.postgresql.yugabytedb;
+
+import lombok.CustomLog;
+import org.flywaydb.core.internal.jdbc.JdbcConnectionFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports the progress of a running CREATE INDEX from pg_stat_progress_create_index, polled from a daemon thread
+ * with its own connection while the statement runs on the main one. Optionally cancels the statement once it has
+ * been running for longer than allowed. Only started when {@code flyway.yugabytedb.indexProgressIntervalMs} is set,
+ * as it takes an extra connection and thread for each CREATE INDEX.
+ */
+@CustomLog
+class YugabyteDBIndexBackfillMonitor implements AutoCloseable {
+
+    private static final String PROGRESS_SQL = "SELECT phase, tuples_done, tuples_total FROM pg_stat_progress_create_index WHERE pid = ?";
+
+    private final JdbcConnectionFactory jdbcConnectionFactory;
+    private final int pid;
+    private final int lineNumber;
+    private final long intervalMillis;
+    private final long maxDurationMillis;
+    private final long start = System.nanoTime();
+    private ScheduledExecutorService scheduler;
+    private Connection connection;
+    private long lastTuplesDone;
+    private long lastPoll = start;
+    private volatile boolean cancelled;
+
+    /**
+     * @param pid               The backend pid of the connection running the CREATE INDEX.
+     * @param maxDurationMillis The time after which the statement is cancelled, or 0 to let it run.
+     */
+    YugabyteDBIndexBackfillMonitor(JdbcConnectionFactory jdbcConnectionFactory, int pid, int lineNumber,
+                                   long intervalMillis, long maxDurationMillis) {
+        this.jdbcConnectionFactory = jdbcConnectionFactory;
+        this.pid = pid;
+        this.lineNumber = lineNumber;
+        this.intervalMillis = intervalMillis;
+        this.maxDurationMillis = maxDurationMillis;
+    }
+
+    YugabyteDBIndexBackfillMonitor start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "flyway-yugabytedb-index-backfill-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::poll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    private void poll() {
+        if (cancelled) {
+            return;
+        }
+        try {
+            if (connection == null) {
+                connection = jdbcConnectionFactory.openConnection();
+            }
+            long now = System.nanoTime();
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(now - start);
+            try (PreparedStatement statement = connection.prepareStatement(PROGRESS_SQL)) {
+                statement.setInt(1, pid);
+                try (ResultSet rs = statement.executeQuery()) {
+                    if (rs.next()) {
+                        report(rs.getString("phase"), rs.getLong("tuples_done"), rs.getLong("tuples_total"), now, elapsedMillis);
+                    } else {
+                        LOG.info("CREATE INDEX at line " + lineNumber + " running for " + elapsedMillis / 1000 + " s, no backfill progress reported yet");
+                    }
+                }
+            }
+            if (maxDurationMillis > 0 && elapsedMillis > maxDurationMillis) {
+                cancel(elapsedMillis);
+            }
+        } catch (SQLException | RuntimeException e) {
+            // Only progress reporting is lost, the statement itself is unaffected
+            LOG.debug(Thread.currentThread().getName() + "> Unable to read index backfill progress: " + e.getMessage());
+        }
+    }
+
+    private void report(String phase, long tuplesDone, long tuplesTotal, long now, long elapsedMillis) {
+        long pollMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(now - lastPoll));
+        long tuplesPerSecond = Math.max(0, tuplesDone - lastTuplesDone) * 1000 / pollMillis;
+        lastTuplesDone = tuplesDone;
+        lastPoll = now;
+        String percent = tuplesTotal > 0 ? String.format("%.1f%%", 100.0 * tuplesDone / tuplesTotal) : "unknown %";
+        LOG.info("CREATE INDEX at line " + lineNumber + " " + phase + ": " + percent + " (" + tuplesDone + "/" + tuplesTotal
+                + " tuples, " + tuplesPerSecond + " tuples/s), running for " + elapsedMillis / 1000 + " s");
+    }
+
+    private void cancel(long elapsedMillis) throws SQLException {
+        LOG.error("CREATE INDEX at line " + lineNumber + " has been running for " + elapsedMillis / 1000
+                + " s, more than the allowed " + maxDurationMillis / 1000 + " s. Cancelling it");
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_cancel_backend(?)")) {
+            statement.setInt(1, pid);
+            statement.execute();
+        }
+        cancelled = true;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(intervalMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                LOG.debug("Unable to close index backfill monitor connection: " + e.getMessage());
+            }
+        }
+    }
+}
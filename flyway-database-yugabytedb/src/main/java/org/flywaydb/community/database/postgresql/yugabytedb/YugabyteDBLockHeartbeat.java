@@ -0,0 +1,118 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-yugabytedb
+ * ========================================================================
+ * Copyright (C) 2010 - 2025 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+
+package org.flywaydb.community.database.postgresql.yugabytedb;
+
+import lombok.CustomLog;
+import org.flywaydb.core.api.FlywayException;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a lease taken in {@link YugabyteDBLockMode#LEASE} mode alive by pushing its ts forward, using the server
+ * clock, from a daemon thread with its own connection. The main connection stays free for the Flyway operation.
+ */
+@CustomLog
+class YugabyteDBLockHeartbeat implements AutoCloseable {
+
+    private final YugabyteDBDatabase database;
+    private final String tableName;
+    private final long lockId;
+    private final long leaseMillis;
+    private ScheduledExecutorService scheduler;
+    private Connection connection;
+    private volatile boolean leaseLost;
+
+    YugabyteDBLockHeartbeat(YugabyteDBDatabase database, String tableName, long lockId, long leaseMillis) {
+        this.database = database;
+        this.tableName = tableName;
+        this.lockId = lockId;
+        this.leaseMillis = leaseMillis;
+    }
+
+    YugabyteDBLockHeartbeat start() {
+        long interval = Math.max(1, leaseMillis / 3);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "flyway-yugabytedb-lock-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::renew, interval, interval, TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    private void renew() {
+        if (leaseLost) {
+            return;
+        }
+        String update = "UPDATE " + YugabyteDBDatabase.LOCK_TABLE_NAME + " SET ts = now() AT TIME ZONE 'UTC' WHERE table_name = ? AND lock_id = ?";
+        try {
+            if (connection == null) {
+                connection = database.openSideConnection();
+            }
+            try (PreparedStatement statement = connection.prepareStatement(update)) {
+                statement.setString(1, tableName);
+                statement.setLong(2, lockId);
+                if (statement.executeUpdate() == 0) {
+                    leaseLost = true;
+                    LOG.error(Thread.currentThread().getName() + "> Lease for lock_id " + lockId + " on " + tableName
+                            + " was taken over by another Flyway operation. It was not renewed within " + leaseMillis + " millis");
+                } else {
+                    LOG.debug(Thread.currentThread().getName() + "> Renewed lease for lock_id " + lockId);
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            // Retried on the next beat, the lease survives a couple of missed renewals
+            LOG.warn(Thread.currentThread().getName() + "> Unable to renew lease for lock_id " + lockId + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @throws FlywayException if another Flyway operation took the lease over since it was acquired.
+     */
+    void checkLease() {
+        if (leaseLost) {
+            throw new FlywayException("Lease for lock_id " + lockId + " on " + tableName + " was taken over by another Flyway operation"
+                    + " while this one was running. Check your Flyway operation before re-trying");
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(leaseMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                LOG.debug("Unable to close lease heartbeat connection: " + e.getMessage());
+            }
+        }
+    }
+}
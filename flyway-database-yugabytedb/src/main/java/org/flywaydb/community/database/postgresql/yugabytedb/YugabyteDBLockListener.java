@@ -0,0 +1,64 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-yugabytedb
+ * ========================================================================
+ * Copyright (C) 2010 - 2025 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+
+package org.flywaydb.community.database.postgresql.yugabytedb;
+
+/**
+ * Notified of what happens while the Flyway lock is acquired and released, to observe contention across runners.
+ * Implementations are configured by class name through {@code flyway.yugabytedb.lockListeners} and need a public
+ * no-arg constructor. They are called on the thread taking the lock, so they must return quickly.
+ */
+public interface YugabyteDBLockListener {
+
+    /**
+     * @param tableName   The schema history table the lock protects.
+     * @param mode        The lock mode in effect.
+     * @param attempts    The number of attempts it took, including the successful one.
+     * @param waitMillis  The time from the first attempt until the lock was held.
+     */
+    default void onLockAcquired(String tableName, YugabyteDBLockMode mode, int attempts, long waitMillis) {
+    }
+
+    /**
+     * The lock could not be acquired within the configured number of retries.
+     */
+    default void onLockFailed(String tableName, YugabyteDBLockMode mode, int attempts, long waitMillis) {
+    }
+
+    /**
+     * An attempt hit a serialization conflict (SQLState 40001) with another runner.
+     */
+    default void onLockConflict(String tableName) {
+    }
+
+    /**
+     * A lock held for longer than its TTL or lease was taken over.
+     *
+     * @param stolenLockId The lock_id of the previous holder.
+     */
+    default void onLockStolen(String tableName, long stolenLockId) {
+    }
+
+    /**
+     * The lock was no longer held by this runner when releasing it, as another one stole it in the meantime.
+     */
+    default void onUnlockMismatch(String tableName, long lockId) {
+    }
+}
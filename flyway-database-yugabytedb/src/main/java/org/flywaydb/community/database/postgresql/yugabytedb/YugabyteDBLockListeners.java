@@ -0,0 +1,74 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-yugabytedb
+ * ========================================================================
+ * Copyright (C) 2010 - 2025 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+
+package org.flywaydb.community.database.postgresql.yugabytedb;
+
+import lombok.CustomLog;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Forwards lock events to several listeners. A failing listener is logged and never fails the Flyway operation.
+ */
+@CustomLog
+class YugabyteDBLockListeners implements YugabyteDBLockListener {
+
+    private final List<YugabyteDBLockListener> listeners;
+
+    YugabyteDBLockListeners(List<YugabyteDBLockListener> listeners) {
+        this.listeners = listeners;
+    }
+
+    @Override
+    public void onLockAcquired(String tableName, YugabyteDBLockMode mode, int attempts, long waitMillis) {
+        notify(listener -> listener.onLockAcquired(tableName, mode, attempts, waitMillis));
+    }
+
+    @Override
+    public void onLockFailed(String tableName, YugabyteDBLockMode mode, int attempts, long waitMillis) {
+        notify(listener -> listener.onLockFailed(tableName, mode, attempts, waitMillis));
+    }
+
+    @Override
+    public void onLockConflict(String tableName) {
+        notify(listener -> listener.onLockConflict(tableName));
+    }
+
+    @Override
+    public void onLockStolen(String tableName, long stolenLockId) {
+        notify(listener -> listener.onLockStolen(tableName, stolenLockId));
+    }
+
+    @Override
+    public void onUnlockMismatch(String tableName, long lockId) {
+        notify(listener -> listener.onUnlockMismatch(tableName, lockId));
+    }
+
+    private void notify(Consumer<YugabyteDBLockListener> event) {
+        for (YugabyteDBLockListener listener : listeners) {
+            try {
+                event.accept(listener);
+            } catch (RuntimeException e) {
+                LOG.warn("Lock listener " + listener.getClass().getName() + " failed: " + e.getMessage());
+            }
+        }
+    }
+}
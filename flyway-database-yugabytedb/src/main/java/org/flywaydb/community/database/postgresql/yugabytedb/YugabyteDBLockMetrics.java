@@ -0,0 +1,192 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-yugabytedb
+ * ========================================================================
+ * Copyright (C) 2010 - 2025 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+
+package org.flywaydb.community.database.postgresql.yugabytedb;
+
+import lombok.CustomLog;
+import org.flywaydb.core.api.FlywayException;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock metrics aggregated over all Flyway operations of the JVM.
+ */
+@CustomLog
+public final class YugabyteDBLockMetrics implements YugabyteDBLockListener, YugabyteDBLockMetricsMXBean {
+
+    public static final String OBJECT_NAME = "org.flywaydb.community.database.yugabytedb:type=LockMetrics";
+
+    private static final long[] WAIT_HISTOGRAM_BOUNDS_MILLIS = {10, 50, 100, 500, 1000, 5000, 10000, 30000, 60000, 300000};
+    private static final YugabyteDBLockMetrics INSTANCE = new YugabyteDBLockMetrics();
+
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder steals = new LongAdder();
+    private final LongAdder unlockMismatches = new LongAdder();
+    private final LongAdder totalWaitMillis = new LongAdder();
+    private final LongAccumulator maxWaitMillis = new LongAccumulator(Math::max, 0);
+    private final LongAdder[] waitHistogram = new LongAdder[WAIT_HISTOGRAM_BOUNDS_MILLIS.length + 1];
+    private volatile boolean registered;
+
+    private YugabyteDBLockMetrics() {
+        for (int i = 0; i < waitHistogram.length; i++) {
+            waitHistogram[i] = new LongAdder();
+        }
+    }
+
+    public static YugabyteDBLockMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server under {@link #OBJECT_NAME}, unless already done.
+     */
+    synchronized void registerMBean() {
+        if (registered) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+                LOG.debug("Registered YugabyteDB lock metrics as " + OBJECT_NAME);
+            }
+            registered = true;
+        } catch (JMException e) {
+            throw new FlywayException("Unable to register YugabyteDB lock metrics as " + OBJECT_NAME, e);
+        }
+    }
+
+    @Override
+    public void onLockAcquired(String tableName, YugabyteDBLockMode mode, int attempts, long waitMillis) {
+        acquisitions.increment();
+        this.attempts.add(attempts);
+        totalWaitMillis.add(waitMillis);
+        maxWaitMillis.accumulate(waitMillis);
+        waitHistogram[bucketOf(waitMillis)].increment();
+    }
+
+    @Override
+    public void onLockFailed(String tableName, YugabyteDBLockMode mode, int attempts, long waitMillis) {
+        failures.increment();
+        this.attempts.add(attempts);
+    }
+
+    @Override
+    public void onLockConflict(String tableName) {
+        conflicts.increment();
+    }
+
+    @Override
+    public void onLockStolen(String tableName, long stolenLockId) {
+        steals.increment();
+    }
+
+    @Override
+    public void onUnlockMismatch(String tableName, long lockId) {
+        unlockMismatches.increment();
+    }
+
+    private static int bucketOf(long waitMillis) {
+        for (int i = 0; i < WAIT_HISTOGRAM_BOUNDS_MILLIS.length; i++) {
+            if (waitMillis <= WAIT_HISTOGRAM_BOUNDS_MILLIS[i]) {
+                return i;
+            }
+        }
+        return WAIT_HISTOGRAM_BOUNDS_MILLIS.length;
+    }
+
+    @Override
+    public long getAcquisitions() {
+        return acquisitions.sum();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    @Override
+    public long getAttempts() {
+        return attempts.sum();
+    }
+
+    @Override
+    public long getConflicts() {
+        return conflicts.sum();
+    }
+
+    @Override
+    public long getSteals() {
+        return steals.sum();
+    }
+
+    @Override
+    public long getUnlockMismatches() {
+        return unlockMismatches.sum();
+    }
+
+    @Override
+    public long getTotalWaitMillis() {
+        return totalWaitMillis.sum();
+    }
+
+    @Override
+    public long getMaxWaitMillis() {
+        return maxWaitMillis.get();
+    }
+
+    @Override
+    public long[] getWaitHistogramBoundsMillis() {
+        return WAIT_HISTOGRAM_BOUNDS_MILLIS.clone();
+    }
+
+    @Override
+    public long[] getWaitHistogram() {
+        long[] counts = new long[waitHistogram.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = waitHistogram[i].sum();
+        }
+        return counts;
+    }
+
+    @Override
+    public void reset() {
+        acquisitions.reset();
+        failures.reset();
+        attempts.reset();
+        conflicts.reset();
+        steals.reset();
+        unlockMismatches.reset();
+        totalWaitMillis.reset();
+        maxWaitMillis.reset();
+        for (LongAdder bucket : waitHistogram) {
+            bucket.reset();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-yugabytedb
+ * ========================================================================
+ * Copyright (C) 2010 - 2025 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+
+package org.flywaydb.community.database.postgresql.yugabytedb;
+
+/**
+ * JMX view of {@link YugabyteDBLockMetrics}, registered when {@code flyway.yugabytedb.lockMetricsJmx} is enabled.
+ */
+public interface YugabyteDBLockMetricsMXBean {
+
+    long getAcquisitions();
+
+    long getFailures();
+
+    long getAttempts();
+
+    long getConflicts();
+
+    long getSteals();
+
+    long getUnlockMismatches();
+
+    long getTotalWaitMillis();
+
+    long getMaxWaitMillis();
+
+    /**
+     * @return The upper bounds, in milliseconds, of the buckets of {@link #getWaitHistogram()}.
+     */
+    long[] getWaitHistogramBoundsMillis();
+
+    /**
+     * @return The number of acquisitions per time-to-acquire bucket. The last bucket counts those above the last bound.
+     */
+    long[] getWaitHistogram();
+
+    void reset();
+}
@@ -0,0 +1,48 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-yugabytedb
+ * ========================================================================
+ * Copyright (C) 2010 - 2025 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+
+package org.flywaydb.community.database.postgresql.yugabytedb;
+
+/**
+ * How {@link YugabyteDBExecutionTemplate} serializes concurrent Flyway operations on the same schema history table.
+ * All Flyway instances working against the same cluster must use the same mode.
+ */
+public enum YugabyteDBLockMode {
+    /**
+     * Token row in {@link YugabyteDBDatabase#LOCK_TABLE_NAME} locked through SELECT ... FOR UPDATE
+     * in an explicit transaction.
+     */
+    TABLE,
+    /**
+     * Token row in {@link YugabyteDBDatabase#LOCK_TABLE_NAME} acquired, or stolen once expired, with a single
+     * INSERT ... ON CONFLICT ... DO UPDATE ... RETURNING and released with a single conditional UPDATE.
+     */
+    ATOMIC,
+    /**
+     * Same statements as {@link #ATOMIC}, but the lock is a short lease that a background heartbeat renews
+     * while the Flyway operation runs. A crashed runner only blocks others until its lease runs out.
+     */
+    LEASE,
+    /**
+     * Session-level {@code pg_advisory_lock} when the cluster supports advisory locks, which needs neither
+     * {@link YugabyteDBDatabase#LOCK_TABLE_NAME} nor row contention. Falls back to {@link #TABLE} otherwise.
+     */
+    ADVISORY
+}
@@ -0,0 +1,58 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-yugabytedb
+ * ========================================================================
+ * Copyright (C) 2010 - 2025 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+
+package org.flywaydb.community.database.postgresql.yugabytedb;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides how long to wait before the next attempt of a retried operation.
+ */
+@FunctionalInterface
+public interface YugabyteDBRetryPolicy {
+
+    /**
+     * @param attempt The number of attempts that already failed, starting at 0.
+     * @return The number of milliseconds to wait before the next attempt.
+     */
+    long nextWaitInMilliseconds(int attempt);
+
+    /**
+     * Waits the same amount of time between all attempts.
+     */
+    static YugabyteDBRetryPolicy fixed(long intervalMillis) {
+        return attempt -> intervalMillis;
+    }
+
+    /**
+     * Capped exponential backoff with full jitter: the wait is picked uniformly between zero and
+     * {@code min(maxIntervalMillis, initialIntervalMillis * 2^attempt)}, so that contenders starting
+     * at the same time spread out instead of retrying in lockstep.
+     */
+    static YugabyteDBRetryPolicy exponentialBackoff(long initialIntervalMillis, long maxIntervalMillis) {
+        return attempt -> {
+            long ceiling = maxIntervalMillis;
+            if (attempt < Long.numberOfLeadingZeros(initialIntervalMillis) - 1) {
+                ceiling = Math.min(maxIntervalMillis, initialIntervalMillis << attempt);
+            }
+            return ThreadLocalRandom.current().nextLong(ceiling + 1);
+        };
+    }
+}
@@ -0,0 +1,156 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-yugabytedb
+ * ========================================================================
+ * Copyright (C) 2010 - 2025 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.flywaydb.community.database.postgresql.yugabytedb;
+
+import lombok.CustomLog;
+import org.flywaydb.core.internal.jdbc.TransactionalExecutionTemplate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.Callable;
+import java.util.regex.Pattern;
+
+/**
+ * Re-runs a transaction when it fails with a transient YugabyteDB error: a serialization failure, a deadlock, or a
+ * catalog version mismatch after a concurrent DDL. A single statement cannot be retried inside a transaction, as its
+ * failure aborts the transaction as a whole.
+ * <p>
+ * DDL commits outside of the transaction on YugabyteDB and Java migrations may have effects outside of the database,
+ * so the rollback only undoes plain data changes. An attempt is therefore only retried when the transient error came
+ * from a statement of a SQL script, every statement it ran was DML, and no migration was recorded in it yet. Enabled
+ * with {@code flyway.yugabytedb.transactionRetryCount}, off by default.
+ */
+@CustomLog
+public class YugabyteDBRetryingTransactionalExecutionTemplate extends TransactionalExecutionTemplate {
+
+    private static final long RETRY_INITIAL_INTERVAL_MILLIS = 50;
+    private static final long RETRY_MAX_INTERVAL_MILLIS = 2000;
+    private static final Pattern DML = Pattern.compile("^(\\s*(--[^\\n]*\\n|/\\*.*?\\*/))*\\s*(SELECT|INSERT|UPDATE|DELETE|WITH|VALUES|SET|SHOW)\\b",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    /**
+     * The attempt running on this thread, told about the statements and migrations it runs.
+     */
+    private static final ThreadLocal<Attempt> CURRENT = new ThreadLocal<>();
+
+    private final int maxRetries;
+    private final YugabyteDBRetryPolicy retryPolicy = YugabyteDBRetryPolicy.exponentialBackoff(RETRY_INITIAL_INTERVAL_MILLIS, RETRY_MAX_INTERVAL_MILLIS);
+
+    YugabyteDBRetryingTransactionalExecutionTemplate(Connection connection, boolean rollbackOnException, int maxRetries) {
+        super(connection, rollbackOnException);
+        this.maxRetries = maxRetries;
+    }
+
+    @Override
+    public <T> T execute(Callable<T> callback) {
+        for (int attempt = 0; ; attempt++) {
+            Attempt outer = CURRENT.get();
+            Attempt current = new Attempt();
+            CURRENT.set(current);
+            try {
+                T result = super.execute(callback);
+                if (attempt > 0) {
+                    LOG.info("Retried transaction " + attempt + " time(s) after transient YugabyteDB errors");
+                }
+                return result;
+            } catch (RuntimeException e) {
+                SQLException transientError = findTransientError(e);
+                if (transientError == null || attempt >= maxRetries) {
+                    throw e;
+                }
+                if (!current.isRetryable()) {
+                    LOG.warn("Transaction failed with a transient error (SQL State: " + transientError.getSQLState() + ") but is not retried, as "
+                            + current.getUnsafeReason() + " and would not be undone by the rollback");
+                    throw e;
+                }
+                long wait = retryPolicy.nextWaitInMilliseconds(attempt);
+                LOG.warn("Transaction rolled back after a transient error (SQL State: " + transientError.getSQLState() + "). Retrying it in "
+                        + wait + " ms (" + (attempt + 1) + "/" + maxRetries + "): " + transientError.getMessage());
+                try {
+                    Thread.sleep(wait);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            } finally {
+                CURRENT.set(outer);
+            }
+        }
+    }
+
+    /**
+     * Called by {@link YugabyteDBSqlScriptExecutor} before each statement it executes.
+     */
+    static void statementStarting(String sql) {
+        Attempt attempt = CURRENT.get();
+        if (attempt != null && !DML.matcher(sql).find()) {
+            attempt.ddl = true;
+        }
+    }
+
+    /**
+     * Called by {@link YugabyteDBSqlScriptExecutor} when a statement failed.
+     */
+    static void statementFailed(SQLException failure) {
+        Attempt attempt = CURRENT.get();
+        if (attempt != null && failure != null && YugabyteDBSqlScriptExecutor.isTransient(failure)) {
+            attempt.transientStatementFailure = true;
+        }
+    }
+
+    /**
+     * Called by {@link YugabyteDBDatabase} when a migration is about to be recorded in the schema history table.
+     */
+    static void migrationRecorded() {
+        Attempt attempt = CURRENT.get();
+        if (attempt != null) {
+            attempt.migrationRecorded = true;
+        }
+    }
+
+    private static SQLException findTransientError(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException && YugabyteDBSqlScriptExecutor.isTransient((SQLException) cause)) {
+                return (SQLException) cause;
+            }
+        }
+        return null;
+    }
+
+    private static class Attempt {
+        private boolean ddl;
+        private boolean transientStatementFailure;
+        private boolean migrationRecorded;
+
+        boolean isRetryable() {
+            return transientStatementFailure && !ddl && !migrationRecorded;
+        }
+
+        String getUnsafeReason() {
+            if (ddl) {
+                return "it ran statements other than DML";
+            }
+            if (migrationRecorded) {
+                return "it already completed a migration";
+            }
+            return "the error did not come from a SQL migration statement";
+        }
+    }
+}
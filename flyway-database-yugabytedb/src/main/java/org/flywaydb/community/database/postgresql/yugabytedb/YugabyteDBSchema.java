@@ -24,6 +24,8 @@ import org.flywaydb.core.internal.database.base.Table;
 import org.flywaydb.core.internal.jdbc.JdbcTemplate;
 import org.flywaydb.database.postgresql.PostgreSQLSchema;
 
+import java.sql.SQLException;
+
 public class YugabyteDBSchema extends PostgreSQLSchema {
     /**
      * @param jdbcTemplate The Jdbc Template for communicating with the DB.
@@ -38,4 +40,16 @@ public class YugabyteDBSchema extends PostgreSQLSchema {
     public Table getTable(String tableName) {
         return new YugabyteDBTable(jdbcTemplate, (YugabyteDBDatabase) database, this, tableName);
     }
+
+    @Override
+    protected void doDrop() throws SQLException {
+        super.doDrop();
+        ((YugabyteDBDatabase) database).lockTableDropped();
+    }
+
+    @Override
+    protected void doClean() throws SQLException {
+        super.doClean();
+        ((YugabyteDBDatabase) database).lockTableDropped();
+    }
 }
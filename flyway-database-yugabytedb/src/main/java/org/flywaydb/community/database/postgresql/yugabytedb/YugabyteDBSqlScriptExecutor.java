@@ -0,0 +1,194 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-yugabytedb
+ * ========================================================================
+ * Copyright (C) 2010 - 2025 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+
+package org.flywaydb.community.database.postgresql.yugabytedb;
+
+import lombok.CustomLog;
+import org.flywaydb.core.api.configuration.Configuration;
+import org.flywaydb.core.internal.callback.CallbackExecutor;
+import org.flywaydb.core.internal.exception.FlywaySqlException;
+import org.flywaydb.core.internal.jdbc.JdbcConnectionFactory;
+import org.flywaydb.core.internal.jdbc.JdbcTemplate;
+import org.flywaydb.core.internal.jdbc.Results;
+import org.flywaydb.core.internal.jdbc.StatementInterceptor;
+import org.flywaydb.core.internal.sqlscript.DefaultSqlScriptExecutor;
+import org.flywaydb.core.internal.sqlscript.SqlScript;
+import org.flywaydb.core.internal.sqlscript.SqlScriptExecutor;
+import org.flywaydb.core.internal.sqlscript.SqlStatement;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Retries statements failing with a transient YugabyteDB error: a serialization failure, a deadlock, or a catalog
+ * version mismatch after a concurrent DDL. A statement is only retried here when it runs in its own transaction, as a
+ * failed statement aborts the whole surrounding transaction otherwise. Transactional migrations which only change data
+ * can be re-run as a whole by {@link YugabyteDBRetryingTransactionalExecutionTemplate} instead, which is told here
+ * about the statements executed.
+ * Also reports the backfill progress of CREATE INDEX statements, which can run for a long time.
+ */
+@CustomLog
+public class YugabyteDBSqlScriptExecutor extends DefaultSqlScriptExecutor {
+
+    private static final String SERIALIZATION_FAILURE = "40001";
+    private static final String DEADLOCK_DETECTED = "40P01";
+    private static final long RETRY_INITIAL_INTERVAL_MILLIS = 50;
+    private static final long RETRY_MAX_INTERVAL_MILLIS = 2000;
+    private static final Pattern CREATE_INDEX = Pattern.compile("^(\\s*(--[^\\n]*\\n|/\\*.*?\\*/))*\\s*CREATE\\s+(UNIQUE\\s+)?INDEX\\b",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private final JdbcConnectionFactory jdbcConnectionFactory;
+    private int retries;
+
+    public YugabyteDBSqlScriptExecutor(JdbcTemplate jdbcTemplate, JdbcConnectionFactory jdbcConnectionFactory, CallbackExecutor callbackExecutor,
+                                       boolean undo, boolean batch, boolean outputQueryResults, StatementInterceptor statementInterceptor) {
+        super(jdbcTemplate, callbackExecutor, undo, batch, outputQueryResults, statementInterceptor);
+        this.jdbcConnectionFactory = jdbcConnectionFactory;
+    }
+
+    @Override
+    public List<Results> execute(SqlScript sqlScript, Configuration config) {
+        retries = 0;
+        try {
+            return super.execute(sqlScript, config);
+        } finally {
+            if (retries > 0) {
+                LOG.info("Retried " + retries + " statement execution(s) of " + sqlScript + " after transient YugabyteDB errors");
+            }
+        }
+    }
+
+    @Override
+    protected Results executeStatement(JdbcTemplate jdbcTemplate, SqlScript sqlScript, SqlStatement sqlStatement, Configuration config) {
+        YugabyteDBExecutionTemplate.checkHeldLease();
+        YugabyteDBRetryingTransactionalExecutionTemplate.statementStarting(sqlStatement.getSql());
+        YugabyteDBConfigurationExtension extension = config.getPluginRegister().getPlugin(YugabyteDBConfigurationExtension.class);
+        if (extension.getIndexProgressIntervalMs() > 0 && CREATE_INDEX.matcher(sqlStatement.getSql()).find()) {
+            try (YugabyteDBIndexBackfillMonitor ignored = startIndexBackfillMonitor(jdbcTemplate, sqlStatement, extension)) {
+                return executeStatementWithRetries(jdbcTemplate, sqlScript, sqlStatement, config, extension);
+            }
+        }
+        return executeStatementWithRetries(jdbcTemplate, sqlScript, sqlStatement, config, extension);
+    }
+
+    private Results executeStatementWithRetries(JdbcTemplate jdbcTemplate, SqlScript sqlScript, SqlStatement sqlStatement,
+                                                Configuration config, YugabyteDBConfigurationExtension extension) {
+        int maxRetries = extension.getStatementRetryCount();
+        if (maxRetries <= 0) {
+            return super.executeStatement(jdbcTemplate, sqlScript, sqlStatement, config);
+        }
+        // Wrapped so that callbacks and error handling still happen once per statement, around all attempts
+        return super.executeStatement(jdbcTemplate, sqlScript, new RetryingSqlStatement(sqlStatement, maxRetries), config);
+    }
+
+    private YugabyteDBIndexBackfillMonitor startIndexBackfillMonitor(JdbcTemplate jdbcTemplate, SqlStatement sqlStatement,
+                                                                     YugabyteDBConfigurationExtension extension) {
+        try {
+            int pid = jdbcTemplate.queryForInt("SELECT pg_backend_pid()");
+            return new YugabyteDBIndexBackfillMonitor(jdbcConnectionFactory, pid, sqlStatement.getLineNumber(),
+                    extension.getIndexProgressIntervalMs(), extension.getIndexBackfillMaxDurationMs()).start();
+        } catch (SQLException e) {
+            throw new FlywaySqlException("Unable to monitor the CREATE INDEX at line " + sqlStatement.getLineNumber(), e);
+        }
+    }
+
+    @Override
+    protected void handleException(Results results, SqlScript sqlScript, SqlStatement sqlStatement, Configuration config) {
+        YugabyteDBRetryingTransactionalExecutionTemplate.statementFailed(results.getException());
+        super.handleException(results, sqlScript, sqlStatement, config);
+    }
+
+    static boolean isTransient(SQLException e) {
+        if (SERIALIZATION_FAILURE.equals(e.getSQLState()) || DEADLOCK_DETECTED.equals(e.getSQLState())) {
+            return true;
+        }
+        String message = e.getMessage() == null ? "" : e.getMessage().toLowerCase();
+        return message.contains("catalog version mismatch")
+                || message.contains("catalog snapshot used for this transaction has been invalidated");
+    }
+
+    private class RetryingSqlStatement implements SqlStatement {
+        private final SqlStatement delegate;
+        private final int maxRetries;
+        private final YugabyteDBRetryPolicy retryPolicy = YugabyteDBRetryPolicy.exponentialBackoff(RETRY_INITIAL_INTERVAL_MILLIS, RETRY_MAX_INTERVAL_MILLIS);
+
+        RetryingSqlStatement(SqlStatement delegate, int maxRetries) {
+            this.delegate = delegate;
+            this.maxRetries = maxRetries;
+        }
+
+        @Override
+        public int getLineNumber() {
+            return delegate.getLineNumber();
+        }
+
+        @Override
+        public String getSql() {
+            return delegate.getSql();
+        }
+
+        @Override
+        public String getDelimiter() {
+            return delegate.getDelimiter();
+        }
+
+        @Override
+        public boolean canExecuteInTransaction() {
+            return delegate.canExecuteInTransaction();
+        }
+
+        @Override
+        public boolean isBatchable() {
+            return delegate.isBatchable();
+        }
+
+        @Override
+        public Results execute(JdbcTemplate jdbcTemplate, SqlScriptExecutor sqlScriptExecutor, Configuration config) {
+            Results results = delegate.execute(jdbcTemplate, sqlScriptExecutor, config);
+            for (int attempt = 0; attempt < maxRetries && isRetryable(jdbcTemplate, results); attempt++) {
+                long wait = retryPolicy.nextWaitInMilliseconds(attempt);
+                LOG.warn("Statement at line " + delegate.getLineNumber() + " failed with a transient error (SQL State: "
+                        + results.getException().getSQLState() + "). Retrying in " + wait + " ms ("
+                        + (attempt + 1) + "/" + maxRetries + "): " + results.getException().getMessage());
+                try {
+                    Thread.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return results;
+                }
+                retries++;
+                results = delegate.execute(jdbcTemplate, sqlScriptExecutor, config);
+            }
+            return results;
+        }
+
+        private boolean isRetryable(JdbcTemplate jdbcTemplate, Results results) {
+            if (results.getException() == null || !isTransient(results.getException())) {
+                return false;
+            }
+            try {
+                return jdbcTemplate.getConnection().getAutoCommit();
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+    }
+}
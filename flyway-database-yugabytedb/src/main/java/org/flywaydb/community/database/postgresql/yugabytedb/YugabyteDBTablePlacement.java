@@ -0,0 +1,109 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-yugabytedb
+ * ========================================================================
+ * Copyright (C) 2010 - 2025 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+
+package org.flywaydb.community.database.postgresql.yugabytedb;
+
+import org.flywaydb.core.api.FlywayException;
+
+/**
+ * Where the lock and schema history tables live. Both are tiny, so by default they are still spread over as many
+ * tablets as any other hash-sharded table, which turns every scan into a scatter-gather. Placing them in a single
+ * tablet, range-sharded, colocated or in a given tablespace keeps each of them on one tablet leader.
+ * Only applies when the tables are created. Existing tables are left as they are.
+ */
+class YugabyteDBTablePlacement {
+
+    enum Sharding {
+        HASH,
+        RANGE
+    }
+
+    private final Sharding sharding;
+    private final Integer tablets;
+    private final Boolean colocation;
+    private final String tablespace;
+
+    /**
+     * @param sharding   How the primary key is sharded, or {@code null} for the server default.
+     * @param tablets    The number of tablets of a hash-sharded table, or {@code null} for the server default.
+     * @param colocation Whether the table is colocated, or {@code null} for the database default.
+     * @param tablespace The tablespace, or {@code null} for the default one.
+     */
+    YugabyteDBTablePlacement(Sharding sharding, Integer tablets, Boolean colocation, String tablespace) {
+        if (tablets != null && sharding == Sharding.RANGE) {
+            throw new FlywayException("The number of tablets can only be set for hash-sharded tables. Range-sharded tables start in a single tablet");
+        }
+        if (tablets != null && Boolean.TRUE.equals(colocation)) {
+            throw new FlywayException("The number of tablets cannot be set for colocated tables, which share the tablet of their database");
+        }
+        this.sharding = sharding;
+        this.tablets = tablets;
+        this.colocation = colocation;
+        this.tablespace = tablespace;
+    }
+
+    /**
+     * @return The PRIMARY KEY constraint on a single column, with its sharding when configured.
+     */
+    String primaryKey(String column) {
+        if (sharding == null) {
+            return "PRIMARY KEY (" + column + ")";
+        }
+        return "PRIMARY KEY (" + column + (sharding == Sharding.RANGE ? " ASC" : " HASH") + ")";
+    }
+
+    /**
+     * @return The clauses following the column list of a CREATE TABLE, starting with a space, or an empty string.
+     */
+    String tableOptions() {
+        StringBuilder options = new StringBuilder();
+        if (colocation != null) {
+            options.append(" WITH (COLOCATION = ").append(colocation).append(")");
+        }
+        appendTablespaceAndSplit(options);
+        return options.toString();
+    }
+
+    /**
+     * @return The clauses following the column list of a CREATE INDEX, starting with a space, or an empty string.
+     * Indexes of a colocated table are colocated with it.
+     */
+    String indexOptions() {
+        StringBuilder options = new StringBuilder();
+        appendTablespaceAndSplit(options);
+        return options.toString();
+    }
+
+    /**
+     * @return The ordering of an index column, matching the sharding of the table.
+     */
+    String indexColumn(String column) {
+        return sharding == Sharding.RANGE ? column + " ASC" : column;
+    }
+
+    private void appendTablespaceAndSplit(StringBuilder options) {
+        if (tablespace != null) {
+            options.append(" TABLESPACE \"").append(tablespace).append("\"");
+        }
+        if (tablets != null) {
+            options.append(" SPLIT INTO ").append(tablets).append(" TABLETS");
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-yugabytedb
+ * ========================================================================
+ * Copyright (C) 2010 - 2025 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.flywaydb.community.database.postgresql.yugabytedb;
+
+import org.flywaydb.community.database.postgresql.yugabytedb.YugabyteDBExecutionTemplate.YBRetryStrategy;
+import org.flywaydb.core.api.FlywayException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class YBRetryStrategyTest {
+
+    private static final int CONTENDERS = 16;
+    private static final long HOLD_MILLIS = 20;
+    private static final long INITIAL_BACKOFF_MILLIS = 5;
+    private static final long MAX_BACKOFF_MILLIS = 200;
+
+    @Test
+    void does_not_sleep_after_a_successful_acquire() throws Exception {
+        // given
+        List<Long> waits = new ArrayList<>();
+        YBRetryStrategy strategy = new YBRetryStrategy(50, YugabyteDBRetryPolicy.fixed(TimeUnit.SECONDS.toMillis(10)), waits::add);
+
+        // when
+        long id = strategy.doWithRetries(() -> 42L, "interrupted", "exceeded");
+
+        // then
+        assertThat(id).isEqualTo(42L);
+        assertThat(waits).isEmpty();
+        assertThat(strategy.getAttempts()).isEqualTo(1);
+    }
+
+    @Test
+    void sleeps_the_policy_wait_between_attempts() throws Exception {
+        // given
+        List<Long> waits = new ArrayList<>();
+        AtomicInteger calls = new AtomicInteger();
+        YBRetryStrategy strategy = new YBRetryStrategy(5, attempt -> 10L * (attempt + 1), waits::add);
+
+        // when
+        long id = strategy.doWithRetries(() -> calls.incrementAndGet() < 4 ? 0L : 7L, "interrupted", "exceeded");
+
+        // then
+        assertThat(id).isEqualTo(7L);
+        assertThat(waits).containsExactly(10L, 20L, 30L);
+        assertThat(strategy.getAttempts()).isEqualTo(4);
+    }
+
+    @Test
+    void gives_up_once_retries_are_exhausted() {
+        // given
+        AtomicInteger attempts = new AtomicInteger();
+        YBRetryStrategy strategy = new YBRetryStrategy(3, YugabyteDBRetryPolicy.fixed(0));
+
+        // then
+        assertThatThrownBy(() -> strategy.doWithRetries(() -> {
+            attempts.incrementAndGet();
+            return 0L;
+        }, "interrupted", "exceeded"))
+                .isInstanceOf(FlywayException.class)
+                .hasMessage("exceeded");
+        assertThat(attempts.get()).isEqualTo(4);
+    }
+
+    @Test
+    void exponential_backoff_is_capped_and_jittered() {
+        // given
+        YugabyteDBRetryPolicy policy = YugabyteDBRetryPolicy.exponentialBackoff(100, 5000);
+        Set<Long> distinctWaits = new HashSet<>();
+
+        // when
+        for (int attempt = 0; attempt < 100; attempt++) {
+            long wait = policy.nextWaitInMilliseconds(attempt);
+
+            // then
+            assertThat(wait).isBetween(0L, Math.min(5000L, 100L << Math.min(attempt, 20)));
+            distinctWaits.add(wait);
+        }
+        assertThat(distinctWaits.size()).isGreaterThan(1);
+    }
+
+    @Test
+    void every_contender_acquires_the_lock_exactly_once() throws Exception {
+        // given
+        AtomicLong lock = new AtomicLong();
+        AtomicInteger holders = new AtomicInteger();
+        AtomicInteger maxHolders = new AtomicInteger();
+        List<Long> acquisitionOrder = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> attemptsPerContender = Collections.synchronizedList(new ArrayList<>());
+        List<long[]> acquisitionsPerContender = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch firstAttempts = new CountDownLatch(CONTENDERS);
+        ExecutorService executor = Executors.newFixedThreadPool(CONTENDERS);
+        List<Future<?>> futures = new ArrayList<>();
+
+        // when
+        for (int i = 1; i <= CONTENDERS; i++) {
+            long lockId = i;
+            futures.add(executor.submit(() -> {
+                start.await();
+                List<Long> waits = new ArrayList<>();
+                YBRetryStrategy strategy = new YBRetryStrategy(-1, YugabyteDBRetryPolicy.exponentialBackoff(INITIAL_BACKOFF_MILLIS, MAX_BACKOFF_MILLIS),
+                        millis -> {
+                            waits.add(millis);
+                            Thread.sleep(millis);
+                        });
+                long requested = System.nanoTime();
+                long acquired = strategy.doWithRetries(() -> {
+                    if (strategy.getAttempts() == 1) {
+                        firstAttempts.countDown();
+                    }
+                    return lock.compareAndSet(0, lockId) ? lockId : 0L;
+                }, "interrupted", "exceeded");
+                long latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - requested);
+                maxHolders.accumulateAndGet(holders.incrementAndGet(), Math::max);
+                acquisitionOrder.add(acquired);
+                attemptsPerContender.add(strategy.getAttempts());
+                for (int attempt = 0; attempt < waits.size(); attempt++) {
+                    assertThat(waits.get(attempt)).isBetween(0L, Math.min(MAX_BACKOFF_MILLIS, INITIAL_BACKOFF_MILLIS << Math.min(attempt, 20)));
+                }
+                assertThat(waits).hasSize(strategy.getAttempts() - 1);
+                acquisitionsPerContender.add(new long[]{latencyMillis, waits.stream().mapToLong(Long::longValue).sum(), strategy.getAttempts()});
+                // Hold the lock until everybody has tried once, so that the contention is deterministic
+                firstAttempts.await();
+                Thread.sleep(HOLD_MILLIS);
+                holders.decrementAndGet();
+                lock.set(0);
+                return acquired;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        // then
+        assertThat(maxHolders.get()).isEqualTo(1);
+        assertThat(acquisitionOrder).hasSize(CONTENDERS).doesNotHaveDuplicates();
+        // Only the winner of the first round acquires without retrying, everybody else backs off and retries
+        assertThat(attemptsPerContender).containsOnlyOnce(1);
+        assertThat(attemptsPerContender).filteredOn(attempts -> attempts > 1).hasSize(CONTENDERS - 1);
+        // Time-to-acquire is at least the backoff slept, and a loser waits at least for the first holder to release
+        // (each entry is latency, total backoff and attempts, in milliseconds and count)
+        assertThat(acquisitionsPerContender).allSatisfy(acquisition ->
+                assertThat(acquisition[0]).isGreaterThanOrEqualTo(acquisition[1]));
+        assertThat(acquisitionsPerContender).filteredOn(acquisition -> acquisition[2] > 1)
+                .allSatisfy(acquisition -> assertThat(acquisition[0]).isGreaterThanOrEqualTo(HOLD_MILLIS));
+    }
+}
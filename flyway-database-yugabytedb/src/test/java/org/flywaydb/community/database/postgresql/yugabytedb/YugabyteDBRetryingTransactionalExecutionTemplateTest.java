@@ -0,0 +1,138 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-yugabytedb
+ * ========================================================================
+ * Copyright (C) 2010 - 2025 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.flywaydb.community.database.postgresql.yugabytedb;
+
+import org.flywaydb.core.api.FlywayException;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class YugabyteDBRetryingTransactionalExecutionTemplateTest {
+
+    private final Map<String, Integer> calls = new HashMap<>();
+    private final Connection connection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+            (proxy, method, args) -> {
+                calls.merge(method.getName(), 1, Integer::sum);
+                return "getAutoCommit".equals(method.getName()) ? Boolean.TRUE : null;
+            });
+
+    @Test
+    void retries_a_transaction_which_only_changed_data() {
+        // given
+        AtomicInteger attempts = new AtomicInteger();
+        YugabyteDBRetryingTransactionalExecutionTemplate template = new YugabyteDBRetryingTransactionalExecutionTemplate(connection, true, 3);
+
+        // when
+        String result = template.execute(() -> {
+            YugabyteDBRetryingTransactionalExecutionTemplate.statementStarting("UPDATE accounts SET balance = balance - 1");
+            if (attempts.incrementAndGet() < 3) {
+                throw failStatement("40001");
+            }
+            return "done";
+        });
+
+        // then
+        assertThat(result).isEqualTo("done");
+        assertThat(attempts.get()).isEqualTo(3);
+        assertThat(calls.get("rollback")).isEqualTo(2);
+        assertThat(calls.get("commit")).isEqualTo(1);
+    }
+
+    @Test
+    void does_not_retry_a_transaction_which_ran_ddl() {
+        // given
+        AtomicInteger attempts = new AtomicInteger();
+        YugabyteDBRetryingTransactionalExecutionTemplate template = new YugabyteDBRetryingTransactionalExecutionTemplate(connection, true, 3);
+
+        // then
+        assertThatThrownBy(() -> template.execute(() -> {
+            attempts.incrementAndGet();
+            YugabyteDBRetryingTransactionalExecutionTemplate.statementStarting("-- add the column\nALTER TABLE accounts ADD COLUMN owner TEXT");
+            YugabyteDBRetryingTransactionalExecutionTemplate.statementStarting("UPDATE accounts SET owner = 'nobody'");
+            throw failStatement("40001");
+        })).isInstanceOf(FlywayException.class);
+        assertThat(attempts.get()).isEqualTo(1);
+    }
+
+    @Test
+    void does_not_retry_once_a_migration_was_recorded() {
+        // given
+        AtomicInteger attempts = new AtomicInteger();
+        YugabyteDBRetryingTransactionalExecutionTemplate template = new YugabyteDBRetryingTransactionalExecutionTemplate(connection, true, 3);
+
+        // then
+        assertThatThrownBy(() -> template.execute(() -> {
+            attempts.incrementAndGet();
+            // A Java migration runs no statement through the script executor, but is recorded like any other
+            YugabyteDBRetryingTransactionalExecutionTemplate.migrationRecorded();
+            YugabyteDBRetryingTransactionalExecutionTemplate.statementStarting("INSERT INTO accounts VALUES (1)");
+            throw failStatement("40P01");
+        })).isInstanceOf(FlywayException.class);
+        assertThat(attempts.get()).isEqualTo(1);
+    }
+
+    @Test
+    void does_not_retry_a_failure_outside_of_a_sql_statement() {
+        // given
+        AtomicInteger attempts = new AtomicInteger();
+        YugabyteDBRetryingTransactionalExecutionTemplate template = new YugabyteDBRetryingTransactionalExecutionTemplate(connection, true, 3);
+
+        // then
+        assertThatThrownBy(() -> template.execute(() -> {
+            attempts.incrementAndGet();
+            throw new FlywayException(new SQLException("could not serialize access", "40001"));
+        })).isInstanceOf(FlywayException.class);
+        assertThat(attempts.get()).isEqualTo(1);
+    }
+
+    @Test
+    void gives_up_after_the_configured_retries() {
+        // given
+        AtomicInteger attempts = new AtomicInteger();
+        YugabyteDBRetryingTransactionalExecutionTemplate template = new YugabyteDBRetryingTransactionalExecutionTemplate(connection, true, 2);
+
+        // then
+        assertThatThrownBy(() -> template.execute(() -> {
+            attempts.incrementAndGet();
+            YugabyteDBRetryingTransactionalExecutionTemplate.statementStarting("DELETE FROM accounts WHERE balance = 0");
+            throw failStatement("40001");
+        })).isInstanceOf(FlywayException.class);
+        assertThat(attempts.get()).isEqualTo(3);
+    }
+
+    @Test
+    void transaction_retries_are_off_by_default() {
+        assertThat(new YugabyteDBConfigurationExtension().getTransactionRetryCount()).isZero();
+    }
+
+    private static FlywayException failStatement(String sqlState) {
+        SQLException failure = new SQLException("transient failure", sqlState);
+        YugabyteDBRetryingTransactionalExecutionTemplate.statementFailed(failure);
+        return new FlywayException(failure);
+    }
+}
@@ -0,0 +1,88 @@
+/*-
+ * ========================LICENSE_START=================================
+ * flyway-database-yugabytedb
+ * ========================================================================
+ * Copyright (C) 2010 - 2025 Red Gate Software Ltd
+ * ========================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =========================LICENSE_END==================================
+ */
+package org.flywaydb.community.database.postgresql.yugabytedb;
+
+import org.flywaydb.community.database.postgresql.yugabytedb.YugabyteDBTablePlacement.Sharding;
+import org.flywaydb.core.api.FlywayException;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class YugabyteDBTablePlacementTest {
+
+    @Test
+    void leaves_everything_to_the_server_by_default() {
+        // given
+        YugabyteDBTablePlacement placement = new YugabyteDBTablePlacement(null, null, null, null);
+
+        // then
+        assertThat(placement.primaryKey("table_name")).isEqualTo("PRIMARY KEY (table_name)");
+        assertThat(placement.tableOptions()).isEmpty();
+        assertThat(placement.indexOptions()).isEmpty();
+        assertThat(placement.indexColumn("installed_rank")).isEqualTo("installed_rank");
+    }
+
+    @Test
+    void range_sharding_orders_the_primary_key_and_index_columns() {
+        // given
+        YugabyteDBTablePlacement placement = new YugabyteDBTablePlacement(Sharding.RANGE, null, null, null);
+
+        // then
+        assertThat(placement.primaryKey("table_name")).isEqualTo("PRIMARY KEY (table_name ASC)");
+        assertThat(placement.indexColumn("installed_rank")).isEqualTo("installed_rank ASC");
+    }
+
+    @Test
+    void hash_sharding_splits_into_the_given_number_of_tablets() {
+        // given
+        YugabyteDBTablePlacement placement = new YugabyteDBTablePlacement(Sharding.HASH, 1, null, "fast_ssd");
+
+        // then
+        assertThat(placement.primaryKey("table_name")).isEqualTo("PRIMARY KEY (table_name HASH)");
+        assertThat(placement.tableOptions()).isEqualTo(" TABLESPACE \"fast_ssd\" SPLIT INTO 1 TABLETS");
+        assertThat(placement.indexOptions()).isEqualTo(" TABLESPACE \"fast_ssd\" SPLIT INTO 1 TABLETS");
+        assertThat(placement.indexColumn("installed_rank")).isEqualTo("installed_rank");
+    }
+
+    @Test
+    void colocation_only_applies_to_the_table() {
+        // given
+        YugabyteDBTablePlacement placement = new YugabyteDBTablePlacement(null, null, true, null);
+
+        // then
+        assertThat(placement.tableOptions()).isEqualTo(" WITH (COLOCATION = true)");
+        assertThat(placement.indexOptions()).isEmpty();
+    }
+
+    @Test
+    void rejects_tablets_on_range_sharded_tables() {
+        assertThatThrownBy(() -> new YugabyteDBTablePlacement(Sharding.RANGE, 1, null, null))
+                .isInstanceOf(FlywayException.class)
+                .hasMessageContaining("hash-sharded");
+    }
+
+    @Test
+    void rejects_tablets_on_colocated_tables() {
+        assertThatThrownBy(() -> new YugabyteDBTablePlacement(null, 1, true, null))
+                .isInstanceOf(FlywayException.class)
+                .hasMessageContaining("colocated");
+    }
+}